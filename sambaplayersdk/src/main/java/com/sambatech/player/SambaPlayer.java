@@ -20,9 +20,11 @@ import com.google.android.exoplayer2.SimpleExoPlayer;
 import com.google.android.exoplayer2.drm.DrmSession;
 import com.google.android.exoplayer2.drm.UnsupportedDrmException;
 import com.google.android.exoplayer2.source.BehindLiveWindowException;
+import com.google.android.exoplayer2.source.ConcatenatingMediaSource;
 import com.google.android.exoplayer2.source.TrackGroupArray;
 import com.google.android.exoplayer2.trackselection.TrackSelection;
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.gms.cast.MediaInfo;
 import com.google.android.gms.cast.MediaMetadata;
 import com.google.android.gms.cast.MediaQueueItem;
@@ -30,12 +32,15 @@ import com.google.android.gms.cast.framework.CastSession;
 import com.google.android.gms.cast.framework.media.RemoteMediaClient;
 import com.google.android.gms.common.api.PendingResult;
 import com.google.android.gms.common.api.ResultCallback;
+import com.sambatech.player.captions.CaptionManager;
+import com.sambatech.player.captions.CaptionRenderer;
 import com.sambatech.player.cast.CastDRM;
 import com.sambatech.player.cast.CastObject;
 import com.sambatech.player.cast.CastOptionsProvider;
 import com.sambatech.player.cast.CastPlayer;
 import com.sambatech.player.cast.CastQuery;
 import com.sambatech.player.cast.SambaCast;
+import com.sambatech.player.event.SambaApiCallback;
 import com.sambatech.player.event.SambaCastListener;
 import com.sambatech.player.event.SambaEvent;
 import com.sambatech.player.event.SambaEventBus;
@@ -45,13 +50,18 @@ import com.sambatech.player.mediasource.PlayerMediaSourceDash;
 import com.sambatech.player.mediasource.PlayerMediaSourceExtractor;
 import com.sambatech.player.mediasource.PlayerMediaSourceHLS;
 import com.sambatech.player.mediasource.PlayerMediaSourceInterface;
+import com.sambatech.player.mediasource.PlayerPool;
 import com.sambatech.player.model.SambaMedia;
 import com.sambatech.player.model.SambaMediaConfig;
+import com.sambatech.player.model.SambaMediaRequest;
 import com.sambatech.player.model.SambaPlayerError;
+import com.sambatech.player.network.SambaTransport;
+import com.sambatech.player.offline.SambaDownloadManager;
 import com.sambatech.player.plugins.PluginManager;
 import com.sambatech.player.utils.CastLiveButtonListener;
 import com.sambatech.player.utils.Helpers;
 import com.sambatech.player.utils.Orientation;
+import com.sambatech.player.utils.SambaScheduler;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
@@ -59,8 +69,6 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -91,16 +99,13 @@ public class SambaPlayer extends FrameLayout {
         @Override
         public void onTracksChanged(TrackGroupArray trackGroups, TrackSelectionArray trackSelections) {
             Format video = null;
-            Format legenda = null;
             TrackSelection videos = null;
             if (trackSelections.length > 0) videos = trackSelections.get(0);
             if (videos != null && videos.getSelectionReason() != C.SELECTION_REASON_INITIAL && videos.getSelectionReason() != C.SELECTION_REASON_TRICK_PLAY) { // == auto
                 if (trackSelections.length > 0 && trackSelections.get(0) != null)
                     video = trackSelections.get(0).getSelectedFormat();
             }
-            if (trackSelections.length > 2 && trackSelections.get(2) != null)
-                legenda = trackSelections.get(2).getSelectedFormat();
-            simplePlayerView.setupMenu(playerMediaSourceInterface, video, legenda, _abrEnabled);
+            simplePlayerView.setupMenu(playerMediaSourceInterface, captionManager, video, _abrEnabled);
 
 
         }
@@ -111,27 +116,7 @@ public class SambaPlayer extends FrameLayout {
             switch (playbackState) {
                 case Player.STATE_READY:
                     if (playWhenReady) {
-
-
-                        if (!_hasStarted) {
-                            _hasStarted = true;
-                            _currentRetryIndex = 0;
-
-                            destroyError();
-                            SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.START));
-
-                            // initial position
-                            if (!media.isLive && _initialTime > 0) {
-                                seek(_initialTime);
-                                _initialTime = 0;
-                            }
-
-                            // start in fullscreen
-                            if (_initialFullscreen != null) {
-                                simplePlayerView.setFullscreen(_initialFullscreen);
-                                _initialFullscreen = null;
-                            }
-                        }
+                        dispatchStart();
                         dispatchPlay();
                     } else {
                         dispatchPause();
@@ -159,23 +144,17 @@ public class SambaPlayer extends FrameLayout {
                     // buffering timeout
                     final AtomicInteger secs = new AtomicInteger(20);
 
-                    errorTimer = new Timer();
-                    errorTimer.scheduleAtFixedRate(new TimerTask() {
+                    startErrorTimer(new Runnable() {
                         @Override
                         public void run() {
-                            getActivity().runOnUiThread(new Runnable() {
-                                @Override
-                                public void run() {
-                                    // on buffer timeout disable ABR (sets to lower)
-                                    if (secs.get() == 0) {
-                                        stopErrorTimer();
-                                    }
+                            // on buffer timeout disable ABR (sets to lower)
+                            if (secs.get() == 0) {
+                                stopErrorTimer();
+                            }
 
-                                    secs.decrementAndGet();
-                                }
-                            });
+                            secs.decrementAndGet();
                         }
-                    }, 0, 1000);
+                    });
                     break;
             }
         }
@@ -195,7 +174,8 @@ public class SambaPlayer extends FrameLayout {
                     postDelayed(new Runnable() {
                         @Override
                         public void run() {
-                            destroyInternal();
+                            // the failed instance must not come back from the pool
+                            destroyInternal(false);
                             create(false);
                         }
                     }, 1000);
@@ -208,7 +188,7 @@ public class SambaPlayer extends FrameLayout {
 
 
             _currentOutputIndex = playerMediaSourceInterface.getCurrentOutputTrackIndex(player.getCurrentTrackSelections(), _abrEnabled);
-            _currentCaptionIndex = playerMediaSourceInterface.getCurrentCaptionTrackIndex(player.getCurrentTrackSelections());
+            _currentCaptionIndex = captionManager != null ? captionManager.getSelectedIndex() : -1;
 
             if (_currentCaptionIndex >= 0) _forceCaptionIndexTo = _currentCaptionIndex;
             if (_currentOutputIndex >= 0) _forceOutputIndexTo = _currentOutputIndex;
@@ -279,29 +259,21 @@ public class SambaPlayer extends FrameLayout {
             else if (_currentRetryIndex++ < media.retriesTotal) {
                 final AtomicInteger secs = new AtomicInteger(8);
 
-                stopErrorTimer();
-
-                errorTimer = new Timer();
-                errorTimer.scheduleAtFixedRate(new TimerTask() {
+                startErrorTimer(new Runnable() {
                     @Override
                     public void run() {
-                        getActivity().runOnUiThread(new Runnable() {
-                            @Override
-                            public void run() {
-                                if (secs.get() == 0) {
-                                    stopErrorTimer();
-                                    create(false);
-                                }
+                        if (secs.get() == 0) {
+                            stopErrorTimer();
+                            create(false);
+                        }
 
-                                dispatchError(SambaPlayerError.unknown.setValues(SambaPlayerError.unknown.getCode(),
-                                        secs.get() > 0 ? String.format("Reconectando em %ss", secs) : "Conectando...",
-                                        SambaPlayerError.Severity.info, error, R.drawable.sambaplayer_ic_nosignal));
+                        dispatchError(SambaPlayerError.unknown.setValues(SambaPlayerError.unknown.getCode(),
+                                secs.get() > 0 ? String.format("Reconectando em %ss", secs) : "Conectando...",
+                                SambaPlayerError.Severity.info, error, R.drawable.sambaplayer_ic_nosignal));
 
-                                secs.decrementAndGet();
-                            }
-                        });
+                        secs.decrementAndGet();
                     }
-                }, 0, 1000);
+                });
                 return;
             }
 
@@ -311,6 +283,12 @@ public class SambaPlayer extends FrameLayout {
 
         @Override
         public void onPositionDiscontinuity(int reason) {
+            int index = player.getCurrentWindowIndex();
+
+            // moved to another playlist item
+            if (index != _playlistIndex && index < playlistSources.size())
+                onPlaylistItemChanged(index, reason == Player.DISCONTINUITY_REASON_PERIOD_TRANSITION);
+
             adjustCurrentOutputs(); //Pode ser o fim do primero AD
         }
 
@@ -320,10 +298,6 @@ public class SambaPlayer extends FrameLayout {
                     playerMediaSourceInterface.forceOutuputTrackTo(_forceOutputIndexTo, _abrEnabled);
                     _forceOutputIndexTo = -1;
                 }
-                if (_forceCaptionIndexTo >= 0) {
-                    playerMediaSourceInterface.forceCaptionTrackTo(_forceCaptionIndexTo);
-                    _forceCaptionIndexTo = -1;
-                }
             }
         }
     };
@@ -347,7 +321,23 @@ public class SambaPlayer extends FrameLayout {
         public void run() {
             if (player == null) return;
 
-            SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.PROGRESS, getCurrentTime(), getDuration()));
+            SambaEventBus.postProgress(getCurrentTime(), getDuration());
+        }
+    };
+
+    private final Runnable progressTimerUpdater = new Runnable() {
+        @Override
+        public void run() {
+            updateProgressTimer();
+        }
+    };
+
+    // progress is only dispatched while someone listens to it
+    private final SambaEventBus.DemandListener progressDemandListener = new SambaEventBus.DemandListener() {
+        @Override
+        public void onDemandChanged(SambaPlayerListener.EventType type, boolean hasSubscribers) {
+            if (type == SambaPlayerListener.EventType.PROGRESS)
+                SambaScheduler.getInstance().execute(progressTimerUpdater);
         }
     };
 
@@ -483,7 +473,7 @@ public class SambaPlayer extends FrameLayout {
     private View errorScreen;
     private @NonNull
     SambaMediaConfig media = new SambaMediaConfig();
-    private Timer progressTimer;
+    private boolean _progressTimerRequested;
     private boolean _hasStarted;
     private boolean _hasFinished;
     private OrientationEventListener orientationEventListener;
@@ -494,7 +484,7 @@ public class SambaPlayer extends FrameLayout {
 
     private float _initialTime = 0f;
     private Boolean _initialFullscreen = null;
-    private Timer errorTimer;
+    private Runnable errorTask;
     private List<String> controlsHidden = new ArrayList<>();
     private boolean _abrEnabled = true;
     private int _forceOutputIndexTo = -1;
@@ -511,8 +501,17 @@ public class SambaPlayer extends FrameLayout {
     private SimpleExoPlayer player;
     private PlayerInstanceDefault playerInstanceDefault;
     private PlayerMediaSourceInterface playerMediaSourceInterface;
+    private CaptionManager captionManager;
+    private CaptionRenderer captionRenderer;
     //private boolean wasPlaying;
 
+    private final List<SambaMediaConfig> playlist = new ArrayList<>();
+    private final List<PlayerMediaSourceInterface> playlistSources = new ArrayList<>();
+    private ConcatenatingMediaSource playlistSource;
+    // playlist items still being resolved (dropped along with the playlist)
+    private final List<SambaApi.RequestHandle> playlistRequests = new ArrayList<>();
+    private int _playlistIndex;
+
     CastPlayer castPlayer;
 
     public SambaPlayer(Context context, AttributeSet attrs) {
@@ -520,6 +519,17 @@ public class SambaPlayer extends FrameLayout {
         applyAttributes(getContext().getTheme().obtainStyledAttributes(attrs, R.styleable.SambaPlayer, 0, 0));
     }
 
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        Context context = reactNativeActivity != null ? reactNativeActivity : getContext();
+
+        // the host screen is going away, warm instances must not outlive it
+        if (!(context instanceof Activity) || ((Activity) context).isFinishing())
+            PlayerPool.getInstance().clear();
+    }
+
     /**
      * Defines/overwrites current media.
      *
@@ -528,8 +538,12 @@ public class SambaPlayer extends FrameLayout {
     public void setMedia(@NonNull SambaMedia media) {
         SambaMediaConfig m = new SambaMediaConfig(media);
 
+        cancelPlaylistRequests();
         this.media = m;
         _initialTime = m.initialTime;
+        playlist.clear();
+        playlist.add(m);
+        _playlistIndex = 0;
 
         if (m.blockIfRooted && Helpers.isDeviceRooted()) {
             _disabled = true;
@@ -544,6 +558,53 @@ public class SambaPlayer extends FrameLayout {
         PluginManager.getInstance().onLoad(this);
     }
 
+    /**
+     * Replaces the current media reusing the internal player (renderers, surface, track selector
+     * and bandwidth meter), which makes switching medias much faster than `setMedia` followed by `play`.
+     * Playback starts automatically, dispatching LOAD and START events as usual.
+     * <p>
+     * Falls back to `setMedia` + `play` whenever the player cannot be reused
+     * (e.g. not created yet, DRM, switching between audio and video or while casting).
+     *
+     * @param media The media to be played.
+     */
+    public void replaceMedia(@NonNull SambaMedia media) {
+        SambaMediaConfig m = new SambaMediaConfig(media);
+
+        if (player == null || _disabled || errorScreen != null || m.url == null || m.url.isEmpty() ||
+                m.drmRequest != null || playerInstanceDefault.hasDrm() || m.isAudioOnly != this.media.isAudioOnly ||
+                m.blockIfRooted && Helpers.isDeviceRooted() || sambaCast != null && sambaCast.isCasting()) {
+            setMedia(media);
+            play();
+            return;
+        }
+
+        PluginManager.getInstance().onDestroy();
+        stopProgressTimer();
+        stopErrorTimer();
+
+        destroyMediaSources();
+
+        // keeps renderers and surface, drops previous media state (e.g. track overrides)
+        playerInstanceDefault.reset();
+
+        cancelPlaylistRequests();
+        this.media = m;
+        _initialTime = m.initialTime;
+        playlist.clear();
+        playlist.add(m);
+        _playlistIndex = 0;
+        _hasStarted = false;
+        _hasFinished = false;
+        _currentBackupIndex = 0;
+        _currentRetryIndex = 0;
+        _currentOutputIndex = -1;
+        _currentCaptionIndex = -1;
+
+        PluginManager.getInstance().onLoad(this);
+        prepareMedia(true);
+    }
+
     /**
      * Retrieves the current media in use.
      * <p>
@@ -557,6 +618,115 @@ public class SambaPlayer extends FrameLayout {
         return media;
     }
 
+    /**
+     * Defines/overwrites the current media with a playlist.
+     * Items are played in sequence without gaps (see {@link #addToPlaylist(SambaMedia)}).
+     *
+     * @param medias The medias to be played
+     */
+    public void setPlaylist(@NonNull SambaMedia... medias) {
+        if (medias.length == 0) return;
+
+        setMedia(medias[0]);
+
+        for (int i = 1; i < medias.length; ++i)
+            addToPlaylist(medias[i]);
+    }
+
+    /**
+     * Appends a media to the playlist.
+     * While playing, the item is buffered right after the preceding one, so the transition has no gap.
+     * LOAD and START events are dispatched for each item (and FINISH when one is played through).
+     * <p>
+     * Only VOD medias without DRM and ads, of the same kind (audio or video) of the first item are accepted,
+     * and only when the first item is a VOD media without DRM and ads as well.
+     *
+     * @param media The media to be appended
+     * @return Whether the media could be added
+     */
+    public boolean addToPlaylist(@NonNull SambaMedia media) {
+        SambaMediaConfig m = new SambaMediaConfig(media);
+        SambaMediaConfig first = playlist.isEmpty() ? this.media : playlist.get(0);
+
+        if (_disabled || first.isLive || first.drmRequest != null || first.adUrl != null || m.url == null || m.url.isEmpty() ||
+                m.isLive || m.drmRequest != null || m.adUrl != null || m.isAudioOnly != first.isAudioOnly ||
+                m.blockIfRooted && Helpers.isDeviceRooted()) {
+            Log.w("SambaPlayer", "Media cannot be added to the playlist: " + m.id);
+            return false;
+        }
+
+        if (playlist.isEmpty())
+            playlist.add(first);
+
+        playlist.add(m);
+
+        if (playlistSource != null)
+            addPlaylistSource(m);
+
+        return true;
+    }
+
+    /**
+     * Resolves medias through the API and appends them to the playlist in order (failed requests are skipped).
+     * Should be called well before the end of the current item, so the next one can be buffered ahead.
+     *
+     * @param api The API instance used to resolve the requests
+     * @param requests The requests of the upcoming medias
+     */
+    public void addToPlaylist(@NonNull SambaApi api, @NonNull SambaMediaRequest... requests) {
+        final List<SambaApi.RequestHandle> handles = new ArrayList<>(requests.length);
+
+        handles.addAll(Arrays.asList(api.requestMedia(requests, new SambaApiCallback() {
+            @Override
+            public void onMediaListResponse(SambaMedia[] mediaList) {
+                playlistRequests.removeAll(handles);
+
+                for (SambaMedia media : mediaList)
+                    addToPlaylist(media);
+            }
+
+            @Override
+            public void onMediaResponseError(Exception e, SambaMediaRequest request) {
+                Log.w("SambaPlayer", "Error resolving playlist item: " + request, e);
+            }
+        })));
+
+        playlistRequests.addAll(handles);
+    }
+
+    /**
+     * Jumps to a playlist item.
+     *
+     * @param index The index of the item in the playlist
+     */
+    public void playPlaylistItem(int index) {
+        if (index < 0 || index >= playlist.size()) return;
+
+        if (player == null) {
+            _playlistIndex = index;
+            media = playlist.get(index);
+            play();
+            return;
+        }
+
+        player.seekToDefaultPosition(index);
+        play();
+    }
+
+    /**
+     * @return The index of the current item in the playlist
+     */
+    public int getPlaylistIndex() {
+        return _playlistIndex;
+    }
+
+    /**
+     * @return The number of items in the playlist (1 for a single media)
+     */
+    public int getPlaylistSize() {
+        return Math.max(playlist.size(), 1);
+    }
+
     /**
      * Resumes media playback
      *
@@ -565,7 +735,6 @@ public class SambaPlayer extends FrameLayout {
     public void play(boolean abrEnabled, int outputIndex) {
         this._abrEnabled = abrEnabled;
         this._forceOutputIndexTo = outputIndex == -1 && !abrEnabled ? 0 : outputIndex;
-        this._forceCaptionIndexTo = 0;
 
         // in case of forbidden rooted device or error state
         if (_disabled || errorScreen != null) return;
@@ -787,24 +956,32 @@ public class SambaPlayer extends FrameLayout {
      * @param index The index in the captions array
      */
     public void changeCaption(int index) {
-        if (player == null || simplePlayerView == null || playerMediaSourceInterface == null)
+        if (captionManager == null)
             return;
-        playerMediaSourceInterface.forceCaptionTrackTo(index);
+        captionManager.select(index);
     }
 
     public String getCaption() {
-        if (player == null || simplePlayerView == null || playerMediaSourceInterface == null)
+        if (captionManager == null)
             return "";
-        Format caption = null;
-        if (player.getCurrentTrackSelections().length > 2 && player.getCurrentTrackSelections().get(2) != null)
-            caption = player.getCurrentTrackSelections().get(2).getSelectedFormat();
-        return String.format("[%s,ffcc00,42]", caption != null && caption.language != null ? caption.language : "");
+        SambaMedia.Caption caption = captionManager.getSelected();
+        return String.format("[%s,ffcc00,42]", caption != null && caption.url != null && caption.label != null ? caption.label : "");
     }
 
     public int getCurrentCaptionIndex() {
-        if (player == null || player.getCurrentTrackSelections() == null || simplePlayerView == null || playerMediaSourceInterface == null)
+        if (captionManager == null || captionManager.getSelectedIndex() == -1)
             return C.INDEX_UNSET;
-        return playerMediaSourceInterface.getCurrentCaptionTrackIndex(player.getCurrentTrackSelections());
+        return captionManager.getSelectedIndex();
+    }
+
+    /**
+     * Retrieves the captions of the current media (shared by the player view, plugins and cast).
+     * Available after LOAD event has been dispatched.
+     *
+     * @return The caption manager or null if the media has no captions
+     */
+    public CaptionManager getCaptionManager() {
+        return captionManager;
     }
 
     /**
@@ -869,48 +1046,55 @@ public class SambaPlayer extends FrameLayout {
             return;
         }
 
-        playerInstanceDefault = new PlayerInstanceDefault(getContext(), media);
+        // DRM sessions are bound to the player on creation
+        playerInstanceDefault = media.drmRequest == null ? PlayerPool.getInstance().acquire(getContext()) :
+                new PlayerInstanceDefault(getContext(), media);
         simplePlayerView = new SambaSimplePlayerView(getContext(), this);
         simplePlayerView.setReactNativeActivity(reactNativeActivity);
-        player = playerInstanceDefault.createPlayerInstance();
+        player = playerInstanceDefault.getPlayer();
         simplePlayerView.setPlayer(player);
+        simplePlayerView.setEnableControls(_enableControls);
+        player.addListener(playerEventListener);
+        SambaEventBus.addDemandListener(progressDemandListener);
+
+        if (!media.isAudioOnly)
+            simplePlayerView.setFullscreenCallback(fullscreenListener);
+
+        // Fullscreen
+        createOrientationEventListener();
+
+        prepareMedia(notify);
+    }
+
+    /**
+     * Configures the view and prepares the internal player for the current media.
+     *
+     * @param notify Whether to dispatch the LOAD event
+     */
+    private void prepareMedia(boolean notify) {
         simplePlayerView.setVideoTitle(media.title);
         simplePlayerView.configureSubTitle(media.captionsConfig);
         simplePlayerView.configView(!media.isAudioOnly, media.isLive, media.isDvr, sambaCast != null && !sambaCast.isCastButtonOut());
-        simplePlayerView.setEnableControls(_enableControls);
 
-        if (media.url.toLowerCase().endsWith(".mp3"))
-            media.type = "progressive";
+        player.setPlayWhenReady(true);
 
-        String url = media.isOffline ? media.downloadUrl : media.url;
-        switch (media.type.toLowerCase()) {
-            case "hls":
-                if(media.clientId == 3170) {
-                    playerMediaSourceInterface = new PlayerMediaSourceHLS(playerInstanceDefault, url, true, media.isLive);
-                } else {
-                    playerMediaSourceInterface = new PlayerMediaSourceHLS(playerInstanceDefault, url, false, media.isLive);
-                }
-                break;
-            case "dash":
-                playerMediaSourceInterface = new PlayerMediaSourceDash(playerInstanceDefault, url);
-                break;
-            default:
-                playerMediaSourceInterface = new PlayerMediaSourceExtractor(playerInstanceDefault, url);
-                break;
-        }
+        if (playlist.isEmpty())
+            playlist.add(media);
 
-        player.addListener(playerEventListener);
+        // one concatenated source, so playlist items (even the ones added later) are buffered ahead
+        playlistSource = new ConcatenatingMediaSource();
 
-        player.setPlayWhenReady(true);
-        if ((media.captions != null && !media.captions.isEmpty()) && (!media.isOffline || media.isSubtitlesOffline)) {
-            playerMediaSourceInterface.addSubtitles(media.captions);
-        }
+        for (SambaMediaConfig item : playlist)
+            addPlaylistSource(item);
 
-        if (media.adUrl != null) {
-            playerMediaSourceInterface.addAds(media.adUrl, simplePlayerView.getPlayerView().getOverlayFrameLayout());
-        }
+        playerMediaSourceInterface = playlistSources.get(_playlistIndex);
+        player.prepare(playlistSource);
+
+        if (_playlistIndex > 0)
+            player.seekToDefaultPosition(_playlistIndex);
+
+        setupCaptions();
 
-        player.prepare(playerMediaSourceInterface.getMediaSource());
         player.setRepeatMode(Player.REPEAT_MODE_OFF);
 
         simplePlayerView.setThemeColor(media.themeColor);
@@ -922,16 +1106,11 @@ public class SambaPlayer extends FrameLayout {
                 simplePlayerView.setBackgroundColor(0xFF434343);
             }
             simplePlayerView.setChromeColor(0x00000000);
-        } else {
-            simplePlayerView.setFullscreenCallback(fullscreenListener);
         }
 
         if (!controlsHidden.isEmpty())
             setHideControls(controlsHidden.toArray(new String[0]));
 
-        // Fullscreen
-        createOrientationEventListener();
-
         // video-only
         if (!media.isAudioOnly) {
 
@@ -954,7 +1133,7 @@ public class SambaPlayer extends FrameLayout {
         } else {
             setupCast();
 
-            simplePlayerView.createCastPlayer(castPlayer, media.themeColor, media.captions);
+            simplePlayerView.createCastPlayer(castPlayer, media.themeColor, captionManager);
 
             if (sambaCast != null && sambaCast.isCasting()) {
                 castListener.onConnected(sambaCast.getCastSession());
@@ -968,6 +1147,138 @@ public class SambaPlayer extends FrameLayout {
     }
 
 
+    private PlayerMediaSourceInterface buildMediaSource(@NonNull SambaMediaConfig media) {
+        PlayerMediaSourceInterface mediaSource;
+
+        if (media.url.toLowerCase().endsWith(".mp3"))
+            media.type = "progressive";
+
+        String url = media.isOffline ? media.downloadUrl : media.url;
+        switch (media.type.toLowerCase()) {
+            case "hls":
+                if(media.clientId == 3170) {
+                    mediaSource = new PlayerMediaSourceHLS(playerInstanceDefault, url, true, media.isLive);
+                } else {
+                    mediaSource = new PlayerMediaSourceHLS(playerInstanceDefault, url, false, media.isLive);
+                }
+                break;
+            case "dash":
+                mediaSource = new PlayerMediaSourceDash(playerInstanceDefault, url);
+                break;
+            default:
+                mediaSource = new PlayerMediaSourceExtractor(playerInstanceDefault, url);
+                break;
+        }
+
+        if (media.adUrl != null) {
+            mediaSource.addAds(media.adUrl, simplePlayerView.getPlayerView().getOverlayFrameLayout());
+        }
+
+        return mediaSource;
+    }
+
+    private void addPlaylistSource(@NonNull SambaMediaConfig item) {
+        PlayerMediaSourceInterface mediaSource = buildMediaSource(item);
+
+        playlistSources.add(mediaSource);
+        playlistSource.addMediaSource(mediaSource.getMediaSource());
+    }
+
+    /**
+     * Switches the current media to another (already buffering) playlist item.
+     *
+     * @param index The index of the new item
+     * @param finished Whether the previous item has been played through
+     */
+    private void onPlaylistItemChanged(int index, boolean finished) {
+        if (finished) {
+            SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.FINISH));
+            _hasFinished = true;
+        }
+
+        // plugins (e.g. tracking) are bound to a media
+        PluginManager.getInstance().onDestroy();
+
+        _playlistIndex = index;
+        media = playlist.get(index);
+        playerMediaSourceInterface = playlistSources.get(index);
+        _currentOutputIndex = -1;
+        _currentCaptionIndex = -1;
+
+        simplePlayerView.setVideoTitle(media.title);
+        simplePlayerView.configureSubTitle(media.captionsConfig);
+        simplePlayerView.setThemeColor(media.themeColor);
+
+        setupCaptions();
+        simplePlayerView.setupCaptionMenu(captionManager);
+
+        if (!media.isAudioOnly && castPlayer != null)
+            simplePlayerView.createCastPlayer(castPlayer, media.themeColor, captionManager);
+
+        PluginManager.getInstance().onLoad(this);
+
+        if (!media.isAudioOnly) {
+            PluginManager.getInstance().onInternalPlayerCreated(simplePlayerView.getPlayerView());
+            SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.LOAD, this));
+        }
+
+        // START once the item is playing: right away when played into without stalling, otherwise on READY
+        _hasStarted = false;
+
+        if (finished && player.getPlayWhenReady() && player.getPlaybackState() == Player.STATE_READY)
+            dispatchStart();
+    }
+
+    /**
+     * Binds the captions of the current media to the view.
+     * No caption is fetched until selected (the default one or later through the menu).
+     */
+    private void setupCaptions() {
+        releaseCaptions();
+
+        if (media.captions == null || media.captions.isEmpty() || media.isOffline && !media.isSubtitlesOffline) {
+            _forceCaptionIndexTo = -1;
+            return;
+        }
+
+        // downloaded captions: read from the download cache only (no network) and parsed ahead on disk
+        if (media.isOffline) {
+            SambaDownloadManager downloadManager = SambaDownloadManager.getInstance();
+            captionManager = new CaptionManager(media.captions, downloadManager.buildCacheOnlyDataSourceFactory(), downloadManager.getCaptionStore());
+        } else {
+            DataSource.Factory dataSourceFactory = SambaDownloadManager.getInstance().isConfigured() ?
+                    SambaDownloadManager.getInstance().buildDataSourceFactory() : SambaTransport.getInstance().buildDataSourceFactory(null);
+
+            captionManager = new CaptionManager(media.captions, dataSourceFactory);
+        }
+
+        captionRenderer = new CaptionRenderer(player, simplePlayerView.getPlayerView().getSubtitleView(), captionManager);
+
+        // keeps the user's choice when recovering from errors
+        captionManager.select(_forceCaptionIndexTo >= 0 ? _forceCaptionIndexTo : captionManager.getDefaultIndex(media.captionsConfig));
+        _forceCaptionIndexTo = -1;
+    }
+
+    private void releaseCaptions() {
+        if (captionRenderer != null)
+            captionRenderer.release();
+
+        if (captionManager != null)
+            captionManager.release();
+
+        captionRenderer = null;
+        captionManager = null;
+    }
+
+    private void destroyMediaSources() {
+        for (PlayerMediaSourceInterface mediaSource : playlistSources)
+            mediaSource.destroy();
+
+        playlistSources.clear();
+        playlistSource = null;
+        playerMediaSourceInterface = null;
+    }
+
     private void createOrientationEventListener() {
         orientationEventListener = new OrientationEventListener(getContext()) {
 
@@ -1006,6 +1317,20 @@ public class SambaPlayer extends FrameLayout {
     }
 
     private void destroyInternal() {
+        destroyInternal(true);
+    }
+
+    private void cancelPlaylistRequests() {
+        for (SambaApi.RequestHandle handle : playlistRequests)
+            handle.cancel();
+
+        playlistRequests.clear();
+    }
+
+    /**
+     * @param recyclePlayer Whether the internal player can be reused (returned to the pool)
+     */
+    private void destroyInternal(boolean recyclePlayer) {
         stopProgressTimer();
         stopErrorTimer();
         stop();
@@ -1020,28 +1345,34 @@ public class SambaPlayer extends FrameLayout {
             sambaCast.setEventListener(null);
         }
 
+        releaseCaptions();
+        cancelPlaylistRequests();
+
         if (simplePlayerView != null) {
             simplePlayerView.setFullscreenCallback(null);
+            simplePlayerView.getPlayerView().setPlayer(null);
             simplePlayerView.destroyInternal();
             simplePlayerView = null;
         }
 
-        if (playerInstanceDefault != null) {
-            playerInstanceDefault.destroy();
-            playerInstanceDefault = null;
-        }
-
-        if (playerMediaSourceInterface != null) {
-            playerMediaSourceInterface.destroy();
-            playerMediaSourceInterface = null;
-        }
+        destroyMediaSources();
 
         if (player != null) {
             player.removeListener(playerEventListener);
-            player.release();
             player = null;
         }
 
+        SambaEventBus.removeDemandListener(progressDemandListener);
+
+        // keeps the player warm for the next media or retry
+        if (playerInstanceDefault != null) {
+            if (recyclePlayer)
+                PlayerPool.getInstance().release(playerInstanceDefault);
+            else PlayerPool.getInstance().discard(playerInstanceDefault);
+
+            playerInstanceDefault = null;
+        }
+
         _hasStarted = false;
         _hasFinished = false;
         _disabled = false;
@@ -1092,32 +1423,57 @@ public class SambaPlayer extends FrameLayout {
     }
 
     private void startProgressTimer() {
-        if (progressTimer != null)
-            return;
-
-        progressTimer = new Timer();
-        progressTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                getActivity().runOnUiThread(progressDispatcher);
-            }
-        }, 0, 250);
+        _progressTimerRequested = true;
+        updateProgressTimer();
     }
 
     private void stopProgressTimer() {
-        if (progressTimer == null)
-            return;
+        _progressTimerRequested = false;
+        updateProgressTimer();
+    }
+
+    private void updateProgressTimer() {
+        SambaScheduler scheduler = SambaScheduler.getInstance();
 
-        progressTimer.cancel();
-        progressTimer.purge();
-        progressTimer = null;
+        if (_progressTimerRequested && player != null && SambaEventBus.hasSubscribers(SambaPlayerListener.EventType.PROGRESS)) {
+            if (!scheduler.isScheduled(progressDispatcher))
+                scheduler.schedule(progressDispatcher, 250);
+        }
+        else scheduler.cancel(progressDispatcher);
+    }
+
+    private void startErrorTimer(@NonNull Runnable task) {
+        stopErrorTimer();
+        errorTask = task;
+        SambaScheduler.getInstance().schedule(task, 1000);
     }
 
     private void stopErrorTimer() {
-        if (errorTimer == null) return;
-        errorTimer.cancel();
-        errorTimer.purge();
-        errorTimer = null;
+        if (errorTask == null) return;
+        SambaScheduler.getInstance().cancel(errorTask);
+        errorTask = null;
+    }
+
+    private void dispatchStart() {
+        if (_hasStarted) return;
+
+        _hasStarted = true;
+        _currentRetryIndex = 0;
+
+        destroyError();
+        SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.START));
+
+        // initial position
+        if (!media.isLive && _initialTime > 0) {
+            seek(_initialTime);
+            _initialTime = 0;
+        }
+
+        // start in fullscreen
+        if (_initialFullscreen != null) {
+            simplePlayerView.setFullscreen(_initialFullscreen);
+            _initialFullscreen = null;
+        }
     }
 
     private void dispatchPlay() {
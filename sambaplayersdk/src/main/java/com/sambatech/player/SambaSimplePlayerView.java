@@ -34,7 +34,6 @@ import com.google.android.exoplayer2.PlaybackParameters;
 import com.google.android.exoplayer2.Player;
 import com.google.android.exoplayer2.SimpleExoPlayer;
 import com.google.android.exoplayer2.source.TrackGroup;
-import com.google.android.exoplayer2.source.TrackGroupArray;
 import com.google.android.exoplayer2.text.CaptionStyleCompat;
 import com.google.android.exoplayer2.ui.PlaybackControlView;
 import com.google.android.exoplayer2.ui.SimpleExoPlayerView;
@@ -42,16 +41,17 @@ import com.google.android.gms.cast.framework.CastButtonFactory;
 import com.sambatech.player.adapter.CaptionsSheetAdapter;
 import com.sambatech.player.adapter.OutputSheetAdapter;
 import com.sambatech.player.adapter.SpeedSheetAdapter;
+import com.sambatech.player.captions.CaptionManager;
 import com.sambatech.player.cast.CastOptionsMenu;
 import com.sambatech.player.cast.CastPlayer;
 import com.sambatech.player.mediasource.PlayerMediaSourceInterface;
+import com.sambatech.player.mediasource.PlayerPool;
 import com.sambatech.player.model.SambaMedia;
 import com.sambatech.player.utils.CastLiveButtonListener;
 import com.sambatech.player.utils.Controls;
 import com.sambatech.player.utils.OptionsMenuLayer;
 import com.sambatech.player.utils.Util;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
@@ -116,6 +116,8 @@ public class SambaSimplePlayerView implements View.OnClickListener {
     private View outputSheetView;
     private View captionSheetView;
     private View speedSheetView;
+    private CaptionsSheetAdapter captionsSheetAdapter;
+    private CaptionManager captionManager;
 
     private CustomTimeBar customTimeBar;
     private ProgressBar progressBar;
@@ -175,7 +177,11 @@ public class SambaSimplePlayerView implements View.OnClickListener {
     public SambaSimplePlayerView(Context context, FrameLayout playerContainer) {
         this.context = context;
         this.playerContainer = playerContainer;
-        playerView = (SimpleExoPlayerView) SimpleExoPlayerView.inflate(context, R.layout.custom_simple_exo_player_view, null);
+        playerView = PlayerPool.getInstance().acquireView(context);
+
+        if (playerView == null)
+            playerView = (SimpleExoPlayerView) SimpleExoPlayerView.inflate(context, R.layout.custom_simple_exo_player_view, null);
+
         bindMethods();
         createMenuView();
         this.originalContainerLayoutParams = this.playerContainer.getLayoutParams();
@@ -284,6 +290,9 @@ public class SambaSimplePlayerView implements View.OnClickListener {
         @Override
         public void onTouchCaptions() {
             if (captionsSheetDialog == null) return;
+            // selection may have changed through the API
+            captionsSheetAdapter.currentIndex = captionManager.getSelectedIndex();
+            captionsSheetAdapter.notifyDataSetChanged();
             captionsSheetDialog.show();
         }
 
@@ -343,7 +352,7 @@ public class SambaSimplePlayerView implements View.OnClickListener {
         playerView.getSubtitleView().setFixedTextSize(COMPLEX_UNIT_SP, captionsConfig.size);
     }
 
-    public void setupMenu(PlayerMediaSourceInterface playerMediaSource, Format selectedVideo, Format selectedSubtitle, boolean isAbrEnabled) {
+    public void setupMenu(PlayerMediaSourceInterface playerMediaSource, CaptionManager captionManager, Format selectedVideo, boolean isAbrEnabled) {
         if (!isVideo) {
             outputSheetView = null;
             outputSheetDialog = null;
@@ -360,18 +369,28 @@ public class SambaSimplePlayerView implements View.OnClickListener {
             outputSheetView = null;
             outputSheetDialog = null;
         }
-        if (playerMediaSource.getSubtitles() != null && playerMediaSource.getSubtitles().length > 1) {
-            initCaptionMenu(playerMediaSource, selectedSubtitle);
-        } else {
-            captionSheetView = null;
-            captionsSheetDialog = null;
-        }
+        initCaptionMenu(captionManager);
         if (!isLive) {
             initSpeedMenu();
         } else {
             speedSheetDialog = null;
             speedSheetView = null;
         }
+        updateMenuVisibility();
+    }
+
+    /**
+     * Rebuilds the captions menu (e.g. the media has changed within a playlist).
+     *
+     * @param captionManager The captions of the current media (may be null)
+     */
+    public void setupCaptionMenu(CaptionManager captionManager) {
+        if (!isVideo) return;
+        initCaptionMenu(captionManager);
+        updateMenuVisibility();
+    }
+
+    private void updateMenuVisibility() {
         this.hasMenu = captionsSheetDialog != null || outputSheetDialog != null || speedSheetDialog != null;
         optionsMenuButton.setVisibility(this.hasMenu && !hiddenViews.contains(optionsMenuButton)? View.VISIBLE : View.GONE);
         optionsMenuLayer.setCaptionsButtonVisibility(captionsSheetDialog != null);
@@ -379,34 +398,32 @@ public class SambaSimplePlayerView implements View.OnClickListener {
         optionsMenuLayer.setSpeedButtonVisibility(speedSheetDialog != null);
     }
 
-    private void initCaptionMenu(final PlayerMediaSourceInterface playerMediaSource, Format currentCaption) {
-        final TrackGroupArray captions = playerMediaSource.getSubtitles();
+    private void initCaptionMenu(final CaptionManager captionManager) {
+        this.captionManager = captionManager;
+        if (captionManager == null || captionManager.getCaptions().size() <= 1) {
+            captionSheetView = null;
+            captionsSheetDialog = null;
+            captionsSheetAdapter = null;
+            return;
+        }
         captionSheetView = getActivity().getLayoutInflater().inflate(R.layout.action_sheet, null);
         TextView title = captionSheetView.findViewById(R.id.action_sheet_title);
         title.setText(context.getString(R.string.captions));
         final ListView menuList = captionSheetView.findViewById(R.id.sheet_list);
-        final CaptionsSheetAdapter adapter = new CaptionsSheetAdapter(context, captions);
+        final CaptionsSheetAdapter adapter = new CaptionsSheetAdapter(context, captionManager.getCaptions());
         menuList.setAdapter(adapter);
-        if (currentCaption != null) {
-            for (int i = 0; i < captions.length; i++) {
-                if (captions.get(i).getFormat(0) == currentCaption) {
-                    adapter.currentIndex = i;
-                }
-            }
-        } else {
-            adapter.currentIndex = 0;
-        }
+        adapter.currentIndex = captionManager.getSelectedIndex();
         menuList.setOnItemClickListener(new AdapterView.OnItemClickListener() {
             @Override
             public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
                 closeCaptionMenu();
-                TrackGroup format = captions.get(position);
-                playerMediaSource.setSubtitle(format);
+                captionManager.select(position);
                 menuList.smoothScrollToPosition(0);
                 adapter.currentIndex = position;
             }
         });
         menuList.deferNotifyDataSetChanged();
+        captionsSheetAdapter = adapter;
         captionsSheetDialog = setupMenuDialog(captionSheetView);
     }
 
@@ -671,6 +688,8 @@ public class SambaSimplePlayerView implements View.OnClickListener {
         outputSheetView = null;
         captionSheetView = null;
         speedSheetView = null;
+        captionsSheetAdapter = null;
+        captionManager = null;
         outputSheetDialog = null;
         captionsSheetDialog = null;
         speedSheetDialog = null;
@@ -767,8 +786,13 @@ public class SambaSimplePlayerView implements View.OnClickListener {
         }
     }
 
-    public void createCastPlayer(@NonNull final CastPlayer castPlayer, int themeColor, final ArrayList<SambaMedia.Caption> captions){
+    public void createCastPlayer(@NonNull final CastPlayer castPlayer, int themeColor, final CaptionManager captionManager){
         this.sambaCastPlayer = castPlayer;
+        // captions may have changed (e.g. next playlist item)
+        if(castOptionsMenu != null) {
+            castOptionsMenu.destroy();
+            castOptionsMenu = null;
+        }
         if(castControlView == null) {
             castControlView = new PlaybackControlView(context);
             ((CustomTimeBar) castControlView.findViewById(R.id.exo_progress)).setDefaultBarColor(themeColor);
@@ -781,13 +805,13 @@ public class SambaSimplePlayerView implements View.OnClickListener {
         castControlView.findViewById(R.id.topbar_live_button).setVisibility(View.GONE);
         castControlView.findViewById(R.id.fullscreen_button).setVisibility(View.GONE);
 
-        if(captions != null && captions.size() > 1) {
+        if(captionManager != null && captionManager.getCaptions().size() > 1) {
             castControlView.findViewById(R.id.topbar_menu_button).setVisibility(View.VISIBLE);
             castControlView.findViewById(R.id.topbar_menu_button).setOnClickListener(new View.OnClickListener() {
                 @Override
                 public void onClick(View view) {
                     if(castOptionsMenu == null) {
-                        castOptionsMenu = new CastOptionsMenu(playerContainer, context, castPlayer, castControlView, captions);
+                        castOptionsMenu = new CastOptionsMenu(playerContainer, context, castPlayer, castControlView, captionManager);
                     }
                     castOptionsMenu.show();
                 }
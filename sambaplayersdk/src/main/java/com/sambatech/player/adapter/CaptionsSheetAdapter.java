@@ -8,8 +8,6 @@ import android.widget.BaseAdapter;
 import android.widget.RadioButton;
 import android.widget.TextView;
 
-import com.google.android.exoplayer2.source.TrackGroup;
-import com.google.android.exoplayer2.source.TrackGroupArray;
 import com.sambatech.player.R;
 import com.sambatech.player.model.SambaMedia;
 
@@ -24,16 +22,16 @@ public class CaptionsSheetAdapter extends BaseAdapter {
     public int currentIndex = -1;
 
     private Context cContext;
-    private TrackGroupArray captions;
+    private List<SambaMedia.Caption> captions;
 
-    public CaptionsSheetAdapter(Context context, TrackGroupArray trackGroupArray) {
+    public CaptionsSheetAdapter(Context context, List<SambaMedia.Caption> captions) {
         this.cContext = context;
-        this.captions = trackGroupArray;
+        this.captions = captions;
     }
 
     @Override
     public int getCount() {
-        return captions.length;
+        return captions.size();
     }
 
     @Override
@@ -61,10 +59,10 @@ public class CaptionsSheetAdapter extends BaseAdapter {
             holder = (CaptionItem) convertView.getTag();
         }
 
-        TrackGroup caption = (TrackGroup) getItem(position);
+        SambaMedia.Caption caption = (SambaMedia.Caption) getItem(position);
 
-        if (caption.getFormat(0).language != null && caption.getFormat(0).language.length() > 0) {
-            holder.label.setText(caption.getFormat(0).language);
+        if (caption.label != null && caption.label.length() > 0) {
+            holder.label.setText(caption.label);
         } else {
             holder.label.setText(R.string.no_caption);
         }
@@ -0,0 +1,142 @@
+package com.sambatech.player.cache;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Memory-bounded cache for prefetched streaming manifests (HLS master playlists and DASH MPDs).
+ *
+ * When the budget is exceeded, entries with the lowest priority are evicted first
+ * (e.g. medias the user has scrolled away from).
+ */
+public final class ManifestCache {
+
+    /**
+     * Memory budget for all manifests (bytes).
+     */
+    public static final int MEMORY_BUDGET = 512 * 1024;
+
+    /**
+     * Time to live for manifest entries.
+     */
+    public static final long TTL = MediaCache.TTL_VOD;
+
+    private static final ManifestCache instance = new ManifestCache(MEMORY_BUDGET);
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final int budget;
+    private int size;
+
+    private ManifestCache(int budget) {
+        this.budget = budget;
+    }
+
+    public static ManifestCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Retrieves a fresh manifest.
+     *
+     * @param url URL of the manifest
+     * @return The manifest or null if absent or expired
+     */
+    public synchronized @Nullable Entry get(@NonNull String url) {
+        Entry entry = entries.get(url);
+
+        if (entry == null) return null;
+
+        if (!entry.isFresh()) {
+            remove(url);
+            return null;
+        }
+
+        return entry;
+    }
+
+    public synchronized boolean contains(@NonNull String url) {
+        return get(url) != null;
+    }
+
+    /**
+     * Stores a manifest, evicting lower priority entries if needed.
+     *
+     * @param url URL of the manifest
+     * @param finalUrl URL the manifest was actually served from (after redirects)
+     * @param data The manifest data
+     * @param priority Entry priority (higher values are kept longer)
+     */
+    public synchronized void put(@NonNull String url, @NonNull String finalUrl, @NonNull byte[] data, long priority) {
+        if (data.length > budget) return;
+
+        remove(url);
+        entries.put(url, new Entry(finalUrl, data, priority));
+        size += data.length;
+        trim();
+    }
+
+    public synchronized void remove(@NonNull String url) {
+        Entry entry = entries.remove(url);
+
+        if (entry != null)
+            size -= entry.data.length;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    private void trim() {
+        while (size > budget) {
+            String lowest = null;
+            Entry lowestEntry = null;
+
+            for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, Entry> e = it.next();
+                Entry entry = e.getValue();
+
+                // drops expired ones along the way
+                if (!entry.isFresh()) {
+                    it.remove();
+                    size -= entry.data.length;
+                    continue;
+                }
+
+                if (lowestEntry == null || entry.priority < lowestEntry.priority ||
+                        entry.priority == lowestEntry.priority && entry.storedAt < lowestEntry.storedAt) {
+                    lowest = e.getKey();
+                    lowestEntry = entry;
+                }
+            }
+
+            if (lowest == null) break;
+
+            remove(lowest);
+        }
+    }
+
+    public static final class Entry {
+        /**
+         * URL the manifest was served from, relative URIs inside it resolve against this one.
+         */
+        public final String finalUrl;
+        public final byte[] data;
+        final long priority;
+        final long storedAt = System.currentTimeMillis();
+
+        Entry(String finalUrl, byte[] data, long priority) {
+            this.finalUrl = finalUrl;
+            this.data = data;
+            this.priority = priority;
+        }
+
+        boolean isFresh() {
+            return System.currentTimeMillis() - storedAt < TTL;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.sambatech.player.cache;
+
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Data source serving prefetched manifests from {@link ManifestCache}, falling back to the upstream one.
+ */
+public final class ManifestCacheDataSource implements DataSource {
+
+    private final DataSource upstream;
+    private DataSource current;
+    private Uri cachedUri;
+
+    public ManifestCacheDataSource(@NonNull DataSource upstream) {
+        this.upstream = upstream;
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+        // memory reads must not affect bandwidth estimates
+        upstream.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        ManifestCache.Entry entry = ManifestCache.getInstance().get(dataSpec.uri.toString());
+
+        if (entry != null) {
+            current = new ByteArrayDataSource(entry.data);
+            cachedUri = Uri.parse(entry.finalUrl);
+        }
+        else {
+            current = upstream;
+            cachedUri = null;
+        }
+
+        return current.open(dataSpec);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        return current.read(buffer, offset, readLength);
+    }
+
+    @Override
+    public @Nullable Uri getUri() {
+        // as reported by the upstream, the URL after redirects
+        if (cachedUri != null) return cachedUri;
+
+        return current != null ? current.getUri() : null;
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+        return current != null ? current.getResponseHeaders() : upstream.getResponseHeaders();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (current == null) return;
+
+        try {
+            current.close();
+        }
+        finally {
+            current = null;
+            cachedUri = null;
+        }
+    }
+
+    /**
+     * Factory wrapping an upstream data source factory.
+     */
+    public static final class Factory implements DataSource.Factory {
+
+        private final DataSource.Factory upstreamFactory;
+
+        public Factory(@NonNull DataSource.Factory upstreamFactory) {
+            this.upstreamFactory = upstreamFactory;
+        }
+
+        @Override
+        public DataSource createDataSource() {
+            return new ManifestCacheDataSource(upstreamFactory.createDataSource());
+        }
+    }
+}
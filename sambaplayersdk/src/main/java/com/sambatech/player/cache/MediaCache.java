@@ -0,0 +1,338 @@
+package com.sambatech.player.cache;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.sambatech.player.model.SambaMediaRequest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Two-tier (memory + disk) cache for the player API responses.
+ *
+ * Entries hold the raw (encoded) response body along with its validators (ETag/Last-Modified),
+ * so stale entries can be revalidated with a conditional request instead of a full download.
+ */
+public final class MediaCache {
+
+    /**
+     * Time to live for VOD (and audio) media entries.
+     */
+    public static final long TTL_VOD = 10 * 60 * 1000;
+
+    /**
+     * Time to live for live channel entries (outputs may change at any time).
+     */
+    public static final long TTL_LIVE = 30 * 1000;
+
+    /**
+     * Disk space for the entries (oldest ones are deleted first).
+     */
+    public static final long MAX_DISK_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * How long stale entries are kept for revalidation.
+     */
+    public static final long MAX_STALE = 24 * 60 * 60 * 1000;
+
+    private static final String TAG = "MediaCache";
+    private static final String DIRECTORY = "sambaplayer_media";
+    private static final String TMP_EXTENSION = ".tmp";
+    private static final int FILE_VERSION = 1;
+    private static final int MEMORY_ENTRIES = 64;
+
+    private static MediaCache instance;
+
+    private final LruCache<String, Entry> memory = new LruCache<>(MEMORY_ENTRIES);
+    private final File directory;
+
+    MediaCache(@NonNull File directory) {
+        this.directory = directory;
+    }
+
+    public static synchronized MediaCache getInstance(@NonNull Context context) {
+        if (instance == null)
+            instance = new MediaCache(new File(context.getApplicationContext().getCacheDir(), DIRECTORY));
+
+        return instance;
+    }
+
+    /**
+     * Builds the cache key for a given request.
+     * Stream name and URL take part in it since they change the server response for lives.
+     *
+     * @param request The media request
+     * @return Unique key for the request
+     */
+    public static String buildKey(@NonNull SambaMediaRequest request) {
+        return String.format("%s|%s|%s|%s|%s|%s",
+                request.environment,
+                request.protocol,
+                request.projectHash,
+                request.mediaId != null ? request.mediaId : "live/" + request.liveChannelId,
+                request.streamName,
+                request.streamUrl);
+    }
+
+    /**
+     * Returns the TTL policy for a given request.
+     *
+     * @param request The media request
+     * @return Time to live in milliseconds
+     */
+    public static long getTtl(@NonNull SambaMediaRequest request) {
+        return request.mediaId == null || request.streamName != null || request.streamUrl != null ? TTL_LIVE : TTL_VOD;
+    }
+
+    /**
+     * Retrieves an entry (fresh or stale), looking up memory first and then disk.
+     *
+     * @param key Cache key (see {@link #buildKey(SambaMediaRequest)})
+     * @return The cached entry or null if absent
+     */
+    public @Nullable Entry get(@NonNull String key) {
+        Entry entry = memory.get(key);
+
+        if (entry == null)
+            entry = read(getFile(key), key);
+
+        if (entry == null)
+            return null;
+
+        // can be neither used nor revalidated anymore
+        if (isExpired(entry)) {
+            remove(key);
+            return null;
+        }
+
+        memory.put(key, entry);
+
+        return entry;
+    }
+
+    /**
+     * Stores an entry in both memory and disk.
+     * Must not be called from the main thread.
+     *
+     * @param key Cache key
+     * @param entry The entry to store
+     */
+    public void put(@NonNull String key, @NonNull Entry entry) {
+        memory.put(key, entry);
+
+        File file = getFile(key);
+
+        if (write(file, key, entry))
+            trim(file);
+    }
+
+    /**
+     * Renews an entry after a successful revalidation (HTTP 304).
+     *
+     * @param key Cache key
+     * @param entry The revalidated entry
+     * @return The renewed entry
+     */
+    public Entry renew(@NonNull String key, @NonNull Entry entry) {
+        Entry renewed = new Entry(entry.body, entry.etag, entry.lastModified, System.currentTimeMillis(), entry.ttl);
+        put(key, renewed);
+        return renewed;
+    }
+
+    public void remove(@NonNull String key) {
+        memory.remove(key);
+
+        File file = getFile(key);
+
+        if (file.exists() && !file.delete())
+            Log.w(TAG, "Failed to delete cache entry: " + key);
+    }
+
+    /**
+     * Clears all entries (memory and disk).
+     */
+    public void clear() {
+        memory.evictAll();
+
+        File[] files = directory.listFiles();
+
+        if (files == null) return;
+
+        for (File file : files)
+            if (!file.delete())
+                Log.w(TAG, "Failed to delete cache file: " + file);
+    }
+
+    private static boolean isExpired(Entry entry) {
+        return !entry.isFresh() && (!entry.canRevalidate() || System.currentTimeMillis() - entry.storedAt >= entry.ttl + MAX_STALE);
+    }
+
+    /**
+     * Deletes the least recently written files until the disk tier fits in {@link #MAX_DISK_SIZE}.
+     *
+     * @param written The file just written (kept)
+     */
+    private synchronized void trim(File written) {
+        File[] files = directory.listFiles();
+
+        if (files == null) return;
+
+        long size = 0;
+
+        for (File file : files)
+            size += file.length();
+
+        if (size <= MAX_DISK_SIZE) return;
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : diff > 0 ? 1 : 0;
+            }
+        });
+
+        for (int i = 0; i < files.length && size > MAX_DISK_SIZE; ++i) {
+            // being written by another thread
+            if (files[i].equals(written) || files[i].getName().endsWith(TMP_EXTENSION)) continue;
+
+            long length = files[i].length();
+
+            if (files[i].delete())
+                size -= length;
+        }
+    }
+
+    private File getFile(String key) {
+        return new File(directory, Integer.toHexString(key.hashCode()) + "_" + key.length());
+    }
+
+    private Entry read(File file, String key) {
+        if (!file.exists()) return null;
+
+        DataInputStream in = null;
+
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+            // version mismatch or hash collision
+            if (in.readInt() != FILE_VERSION || !key.equals(in.readUTF())) return null;
+
+            long storedAt = in.readLong();
+            long ttl = in.readLong();
+            String etag = readNullable(in);
+            String lastModified = readNullable(in);
+            byte[] body = new byte[in.readInt()];
+
+            in.readFully(body);
+
+            return new Entry(body, etag, lastModified, storedAt, ttl);
+        }
+        catch (IOException e) {
+            Log.w(TAG, "Failed to read cache entry", e);
+            return null;
+        }
+        finally {
+            try {
+                if (in != null) in.close();
+            }
+            catch (IOException e) {
+                Log.w(TAG, "Error closing cache entry", e);
+            }
+        }
+    }
+
+    /**
+     * Writes to a temporary file first, so a concurrent or interrupted write never leaves a truncated entry.
+     *
+     * @return Whether the entry was stored
+     */
+    private boolean write(File file, String key, Entry entry) {
+        if (!directory.exists() && !directory.mkdirs()) return false;
+
+        File tmp = new File(directory, file.getName() + "." + Thread.currentThread().getId() + TMP_EXTENSION);
+        DataOutputStream out = null;
+
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeInt(FILE_VERSION);
+            out.writeUTF(key);
+            out.writeLong(entry.storedAt);
+            out.writeLong(entry.ttl);
+            writeNullable(out, entry.etag);
+            writeNullable(out, entry.lastModified);
+            out.writeInt(entry.body.length);
+            out.write(entry.body);
+            out.close();
+            out = null;
+
+            if (!tmp.renameTo(file))
+                throw new IOException("Failed to rename " + tmp);
+
+            return true;
+        }
+        catch (IOException e) {
+            Log.w(TAG, "Failed to write cache entry", e);
+            tmp.delete();
+            return false;
+        }
+        finally {
+            try {
+                if (out != null) out.close();
+            }
+            catch (IOException e) {
+                Log.w(TAG, "Error closing cache entry", e);
+            }
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+
+        if (value != null)
+            out.writeUTF(value);
+    }
+
+    /**
+     * Cached API response.
+     */
+    public static final class Entry {
+        public final byte[] body;
+        public final String etag;
+        public final String lastModified;
+        public final long storedAt;
+        public final long ttl;
+
+        public Entry(@NonNull byte[] body, String etag, String lastModified, long storedAt, long ttl) {
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.storedAt = storedAt;
+            this.ttl = ttl;
+        }
+
+        public boolean isFresh() {
+            return System.currentTimeMillis() - storedAt < ttl;
+        }
+
+        public boolean canRevalidate() {
+            return etag != null || lastModified != null;
+        }
+    }
+}
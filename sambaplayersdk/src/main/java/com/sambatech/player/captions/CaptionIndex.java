@@ -0,0 +1,242 @@
+package com.sambatech.player.captions;
+
+import android.support.annotation.NonNull;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Compact index of caption cues, made of parallel primitive arrays sorted by start time.
+ *
+ * Lookups are O(log n) (O(1) during sequential playback thanks to a cursor) and allocate nothing,
+ * so they can run on every progress tick. Cues may be added while the index is in use (e.g. during parsing).
+ * The arrays can be written to and read back from disk as they are (see {@link CaptionStore}).
+ */
+public final class CaptionIndex {
+
+    public static final int NOT_FOUND = -1;
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int MAGIC = 0x53434958; // "SCIX"
+    private static final int VERSION = 1;
+
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] ends = new int[INITIAL_CAPACITY];
+    // max end time up to each cue (bounds the backward scan for overlapping cues)
+    private int[] maxEnds = new int[INITIAL_CAPACITY];
+    private int[] textStarts = new int[INITIAL_CAPACITY];
+    private int[] textEnds = new int[INITIAL_CAPACITY];
+    private final StringBuilder texts = new StringBuilder();
+    private int size;
+    private int cursor;
+
+    /**
+     * Adds a cue (in order in the common case, inserted otherwise).
+     *
+     * @param startMs Start time (ms)
+     * @param endMs End time (ms)
+     * @param text Text of the cue
+     */
+    public synchronized void add(int startMs, int endMs, @NonNull CharSequence text) {
+        if (size == starts.length)
+            grow();
+
+        int i = size;
+
+        // out of order cue
+        if (size > 0 && starts[size - 1] > startMs) {
+            i = upperBound(startMs);
+
+            System.arraycopy(starts, i, starts, i + 1, size - i);
+            System.arraycopy(ends, i, ends, i + 1, size - i);
+            System.arraycopy(textStarts, i, textStarts, i + 1, size - i);
+            System.arraycopy(textEnds, i, textEnds, i + 1, size - i);
+        }
+
+        starts[i] = startMs;
+        ends[i] = endMs;
+        textStarts[i] = texts.length();
+        texts.append(text);
+        textEnds[i] = texts.length();
+        ++size;
+
+        for (int j = i; j < size; ++j)
+            maxEnds[j] = Math.max(j > 0 ? maxEnds[j - 1] : Integer.MIN_VALUE, ends[j]);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Finds the cue being shown at a given time (the latest started one if they overlap).
+     *
+     * @param timeMs Playback time (ms)
+     * @return The cue index or {@link #NOT_FOUND}
+     */
+    public synchronized int find(long timeMs) {
+        if (size == 0) return NOT_FOUND;
+
+        int i;
+
+        // sequential playback: same or next cue
+        if (isLastStartedAt(cursor, timeMs))
+            i = cursor;
+        else if (isLastStartedAt(cursor + 1, timeMs))
+            i = cursor + 1;
+        else i = upperBound(timeMs) - 1;
+
+        if (i < 0) return NOT_FOUND;
+
+        cursor = i;
+
+        for (int j = i; j >= 0 && maxEnds[j] > timeMs; --j)
+            if (ends[j] > timeMs)
+                return j;
+
+        return NOT_FOUND;
+    }
+
+    /**
+     * Writes the cues in a compact binary format (arrays as contiguous blocks, read back in bulk).
+     *
+     * @param out The output (not closed)
+     */
+    public synchronized void write(@NonNull DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(size);
+
+        ByteBuffer buffer = ByteBuffer.allocate(size*4*4);
+        IntBuffer ints = buffer.asIntBuffer();
+
+        ints.put(starts, 0, size);
+        ints.put(ends, 0, size);
+        ints.put(textStarts, 0, size);
+        ints.put(textEnds, 0, size);
+        out.write(buffer.array());
+
+        byte[] bytes = texts.toString().getBytes("UTF-8");
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Replaces the cues by the ones previously written by {@link #write(DataOutputStream)}.
+     *
+     * @param in The input (not closed)
+     * @throws IOException If the data is truncated, of an unknown version or inconsistent
+     */
+    public void read(@NonNull DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            throw new IOException("Unknown caption index format");
+
+        int count = in.readInt();
+
+        if (count < 0 || count > Integer.MAX_VALUE/16)
+            throw new IOException("Invalid caption index size: " + count);
+
+        int capacity = Math.max(count, INITIAL_CAPACITY);
+        int[] starts = new int[capacity];
+        int[] ends = new int[capacity];
+        int[] maxEnds = new int[capacity];
+        int[] textStarts = new int[capacity];
+        int[] textEnds = new int[capacity];
+
+        byte[] block = new byte[count*4*4];
+
+        in.readFully(block);
+
+        IntBuffer ints = ByteBuffer.wrap(block).asIntBuffer();
+
+        ints.get(starts, 0, count);
+        ints.get(ends, 0, count);
+        ints.get(textStarts, 0, count);
+        ints.get(textEnds, 0, count);
+
+        for (int i = 0; i < count; ++i)
+            maxEnds[i] = Math.max(i > 0 ? maxEnds[i - 1] : Integer.MIN_VALUE, ends[i]);
+
+        int length = in.readInt();
+
+        if (length < 0)
+            throw new IOException("Invalid caption index text length: " + length);
+
+        byte[] bytes = new byte[length];
+
+        in.readFully(bytes);
+
+        String text = new String(bytes, "UTF-8");
+
+        for (int i = 0; i < count; ++i)
+            if ((i > 0 && starts[i - 1] > starts[i]) || textStarts[i] < 0 || textStarts[i] > textEnds[i] || textEnds[i] > text.length())
+                throw new IOException("Corrupted caption index");
+
+        synchronized (this) {
+            this.starts = starts;
+            this.ends = ends;
+            this.maxEnds = maxEnds;
+            this.textStarts = textStarts;
+            this.textEnds = textEnds;
+            texts.setLength(0);
+            texts.append(text);
+            size = count;
+            cursor = 0;
+        }
+    }
+
+    public synchronized int getStart(int index) {
+        return starts[index];
+    }
+
+    public synchronized int getEnd(int index) {
+        return ends[index];
+    }
+
+    public synchronized String getText(int index) {
+        return texts.substring(textStarts[index], textEnds[index]);
+    }
+
+    private boolean isLastStartedAt(int i, long timeMs) {
+        return i < size && starts[i] <= timeMs && (i + 1 == size || starts[i + 1] > timeMs);
+    }
+
+    /**
+     * @return Index of the first cue starting after the time
+     */
+    private int upperBound(long timeMs) {
+        if (size == 0) return 0;
+
+        int base = 0;
+
+        // branchless halving (conditional moves instead of mispredicted jumps on random seeks)
+        for (int n = size; n > 1; n -= n >>> 1) {
+            int half = n >>> 1;
+            base = starts[base + half] <= timeMs ? base + half : base;
+        }
+
+        return starts[base] <= timeMs ? base + 1 : base;
+    }
+
+    private void grow() {
+        int capacity = starts.length * 2;
+
+        starts = copyOf(starts, capacity);
+        ends = copyOf(ends, capacity);
+        maxEnds = copyOf(maxEnds, capacity);
+        textStarts = copyOf(textStarts, capacity);
+        textEnds = copyOf(textEnds, capacity);
+    }
+
+    private static int[] copyOf(int[] array, int length) {
+        int[] copy = new int[length];
+
+        System.arraycopy(array, 0, copy, 0, array.length);
+
+        return copy;
+    }
+}
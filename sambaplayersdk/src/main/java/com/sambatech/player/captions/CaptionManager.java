@@ -0,0 +1,206 @@
+package com.sambatech.player.captions;
+
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceInputStream;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.sambatech.player.model.SambaMedia;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Caption pipeline of a media, shared by the renderer, the captions menus and plugins.
+ *
+ * A language is only fetched when it is selected; its cues are parsed once while streaming
+ * and kept in a cache shared by all players (switching back or replaying is instant).
+ * With a {@link CaptionStore} (downloaded medias), parsed cues are also read from and written to disk.
+ */
+public final class CaptionManager {
+
+    /**
+     * Listener for caption selection (main thread).
+     */
+    public interface Listener {
+        /**
+         * @param index The index of the selected caption (-1 for none)
+         */
+        void onCaptionChanged(int index);
+    }
+
+    /**
+     * Number of parsed captions kept in memory (by URL).
+     */
+    public static final int CACHE_SIZE = 8;
+
+    private static final LruCache<String, CaptionIndex> cache = new LruCache<>(CACHE_SIZE);
+
+    private final List<SambaMedia.Caption> captions;
+    private final DataSource.Factory dataSourceFactory;
+    private final CaptionStore store;
+    private final List<Listener> listeners = new ArrayList<>();
+    private int selectedIndex = -1;
+    private CaptionIndex index;
+    private CaptionParser parser;
+
+    /**
+     * @param captions The captions of the media
+     * @param dataSourceFactory Source of the caption files (network or download cache)
+     */
+    public CaptionManager(@NonNull List<SambaMedia.Caption> captions, @NonNull DataSource.Factory dataSourceFactory) {
+        this(captions, dataSourceFactory, null);
+    }
+
+    /**
+     * @param captions The captions of the media
+     * @param dataSourceFactory Source of the caption files (network or download cache)
+     * @param store Parsed captions on disk (null to always parse)
+     */
+    public CaptionManager(@NonNull List<SambaMedia.Caption> captions, @NonNull DataSource.Factory dataSourceFactory, @Nullable CaptionStore store) {
+        this.captions = captions;
+        this.dataSourceFactory = dataSourceFactory;
+        this.store = store;
+    }
+
+    public @NonNull List<SambaMedia.Caption> getCaptions() {
+        return Collections.unmodifiableList(captions);
+    }
+
+    /**
+     * Retrieves the caption to start with: the language from the user config if available, the first one otherwise.
+     *
+     * @param config The captions config of the media
+     * @return The index of the caption (-1 if there are none)
+     */
+    public int getDefaultIndex(@Nullable SambaMedia.CaptionsConfig config) {
+        if (captions.isEmpty()) return -1;
+
+        if (config != null && config.language != null) {
+            for (int i = 0; i < captions.size(); ++i) {
+                String language = captions.get(i).language;
+
+                if (language != null && language.toLowerCase().replace('_', '-').equals(config.language))
+                    return i;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Selects a caption, fetching it unless already cached (in memory or on disk).
+     *
+     * @param index The index in the captions list (-1 or a caption without URL disables captions)
+     */
+    public void select(int index) {
+        if (index == selectedIndex || index < -1 || index >= captions.size()) return;
+
+        if (parser != null)
+            parser.cancel();
+
+        selectedIndex = index;
+        parser = null;
+        this.index = null;
+
+        String url = index != -1 ? captions.get(index).url : null;
+
+        if (url != null && !url.isEmpty()) {
+            this.index = cache.get(url);
+
+            // available for lookup while being parsed
+            if (this.index == null) {
+                this.index = new CaptionIndex();
+                parser = new CaptionParser(this.index);
+                load(url, this.index, parser);
+            }
+        }
+
+        for (Listener listener : new ArrayList<>(listeners))
+            listener.onCaptionChanged(index);
+    }
+
+    public int getSelectedIndex() {
+        return selectedIndex;
+    }
+
+    public @Nullable SambaMedia.Caption getSelected() {
+        return selectedIndex != -1 ? captions.get(selectedIndex) : null;
+    }
+
+    /**
+     * Retrieves the cues of the selected caption (possibly still being parsed).
+     *
+     * @return The cues or null if captions are disabled
+     */
+    public @Nullable CaptionIndex getIndex() {
+        return index;
+    }
+
+    public void addListener(@NonNull Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(@NonNull Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Stops loading and drops the listeners (cached cues are kept).
+     */
+    public void release() {
+        if (parser != null)
+            parser.cancel();
+
+        parser = null;
+        index = null;
+        listeners.clear();
+    }
+
+    private void load(final String url, final CaptionIndex index, final CaptionParser parser) {
+        final DataSource dataSource = dataSourceFactory.createDataSource();
+
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (store != null && store.load(url, index)) {
+                    if (!parser.isCanceled())
+                        cache.put(url, index);
+
+                    return;
+                }
+
+                DataSourceInputStream in = new DataSourceInputStream(dataSource, new DataSpec(Uri.parse(url)));
+
+                try {
+                    int count = parser.parse(in);
+
+                    if (parser.isCanceled()) return;
+
+                    cache.put(url, index);
+                    Log.i(CaptionManager.class.getSimpleName(), count + " captions parsed: " + url);
+
+                    if (store != null)
+                        store.save(url, index);
+                }
+                catch (IOException e) {
+                    if (!parser.isCanceled())
+                        Log.e(CaptionManager.class.getSimpleName(), "Failed to load captions: " + url, e);
+                }
+                finally {
+                    try {
+                        in.close();
+                    }
+                    catch (IOException ignored) {}
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,249 @@
+package com.sambatech.player.captions;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * Single pass SRT/WebVTT parser.
+ *
+ * Reads the input in chunks (no regexes, no whole-file strings) and adds each cue to the index as soon as
+ * its block ends, so captions can be shown while the file is still arriving.
+ * Both formats are handled the same way: a block is a cue when it has a timing line ("start --> end"),
+ * header, numbering, identifiers, settings and NOTE/STYLE/REGION blocks are skipped.
+ */
+public final class CaptionParser {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final char BOM = '\uFEFF';
+
+    private final CaptionIndex index;
+    private final StringBuilder line = new StringBuilder(128);
+    private final StringBuilder text = new StringBuilder(256);
+    private volatile boolean canceled;
+
+    // current block
+    private boolean inCue;
+    private int start;
+    private int end;
+    private int lastLineStart;
+    private int count;
+
+    /**
+     * @param index Index receiving the cues
+     */
+    public CaptionParser(@NonNull CaptionIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Parses an UTF-8 stream (e.g. HTTP response or cache file).
+     * Blocks until the end of the stream or cancellation.
+     *
+     * @param in The stream (not closed)
+     * @return Number of cues parsed
+     */
+    public int parse(@NonNull InputStream in) throws IOException {
+        return parse(new InputStreamReader(in, "UTF-8"));
+    }
+
+    /**
+     * Parses captions from a reader.
+     * Blocks until the end of the input or cancellation.
+     *
+     * @param reader The reader (not closed)
+     * @return Number of cues parsed
+     */
+    public int parse(@NonNull Reader reader) throws IOException {
+        char[] buffer = new char[BUFFER_SIZE];
+        boolean first = true;
+        boolean cr = false;
+        int len;
+
+        while (!canceled && (len = reader.read(buffer)) != -1) {
+            int lineStart = 0;
+
+            // optional BOM
+            if (first && len > 0) {
+                first = false;
+
+                if (buffer[0] == BOM)
+                    lineStart = 1;
+            }
+
+            for (int i = lineStart; i < len; ++i) {
+                char c = buffer[i];
+
+                if (c != '\n' && c != '\r') continue;
+
+                line.append(buffer, lineStart, i - lineStart);
+                lineStart = i + 1;
+
+                // second half of a CRLF (possibly split between chunks)
+                if (c == '\n' && (i > 0 ? buffer[i - 1] == '\r' : cr) && line.length() == 0)
+                    continue;
+
+                onLine();
+                line.setLength(0);
+            }
+
+            line.append(buffer, lineStart, len - lineStart);
+            cr = buffer[len - 1] == '\r';
+        }
+
+        if (!canceled) {
+            if (line.length() > 0)
+                onLine();
+
+            endBlock();
+        }
+
+        line.setLength(0);
+
+        return count;
+    }
+
+    /**
+     * Stops parsing (may be called from any thread).
+     */
+    public void cancel() {
+        canceled = true;
+    }
+
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    private void onLine() {
+        if (isBlank(line)) {
+            endBlock();
+            return;
+        }
+
+        int arrow = indexOfArrow(line);
+
+        if (arrow != -1) {
+            int startMs = parseTime(line, 0, arrow);
+            int endMs = parseTime(line, arrow + 3, line.length());
+
+            if (startMs != -1 && endMs != -1) {
+                // missing blank line between cues: the previous line was the number of this one
+                if (inCue) {
+                    if (isNumber(text, lastLineStart))
+                        text.setLength(Math.max(lastLineStart - 1, 0));
+
+                    endBlock();
+                }
+
+                inCue = true;
+                start = startMs;
+                end = endMs;
+                return;
+            }
+        }
+
+        // header, number, identifier or non cue block
+        if (!inCue) return;
+
+        if (text.length() > 0)
+            text.append('\n');
+
+        lastLineStart = text.length();
+        text.append(line);
+    }
+
+    private void endBlock() {
+        if (inCue && text.length() > 0 && end >= start) {
+            index.add(start, end, text);
+            ++count;
+        }
+
+        inCue = false;
+        text.setLength(0);
+        lastLineStart = 0;
+    }
+
+    /**
+     * Parses "[hh:]mm:ss[,.]fff" (surrounding spaces and trailing cue settings are ignored).
+     *
+     * @return Time in ms or -1 if invalid
+     */
+    static int parseTime(CharSequence s, int from, int to) {
+        int i = from;
+
+        while (i < to && isSpace(s.charAt(i)))
+            ++i;
+
+        int seconds = 0;
+        int group = 0;
+        int digits = 0;
+        int separators = 0;
+        int ms = 0;
+
+        for (; i < to; ++i) {
+            char c = s.charAt(i);
+
+            if (c >= '0' && c <= '9') {
+                group = group*10 + (c - '0');
+                ++digits;
+            }
+            else if (c == ':') {
+                if (digits == 0 || ++separators > 2) return -1;
+
+                seconds = seconds*60 + group;
+                group = 0;
+                digits = 0;
+            }
+            else if (c == ',' || c == '.') {
+                int scale = 100;
+
+                // milliseconds (extra digits are truncated)
+                for (++i; i < to && (c = s.charAt(i)) >= '0' && c <= '9'; ++i, scale /= 10)
+                    ms += (c - '0')*scale;
+
+                break;
+            }
+            else if (isSpace(c)) break;
+            else return -1;
+        }
+
+        if (digits == 0 || separators == 0) return -1;
+
+        return (seconds*60 + group)*1000 + ms;
+    }
+
+    private static int indexOfArrow(CharSequence s) {
+        for (int i = 0, n = s.length() - 2; i < n; ++i)
+            if (s.charAt(i) == '-' && s.charAt(i + 1) == '-' && s.charAt(i + 2) == '>')
+                return i;
+
+        return -1;
+    }
+
+    private static boolean isBlank(CharSequence s) {
+        for (int i = 0, n = s.length(); i < n; ++i)
+            if (!isSpace(s.charAt(i)))
+                return false;
+
+        return true;
+    }
+
+    private static boolean isNumber(CharSequence s, int from) {
+        int n = s.length();
+
+        if (from >= n) return false;
+
+        for (int i = from; i < n; ++i)
+            if (s.charAt(i) < '0' || s.charAt(i) > '9')
+                return false;
+
+        return true;
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t';
+    }
+}
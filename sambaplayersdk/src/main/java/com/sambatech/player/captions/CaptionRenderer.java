@@ -0,0 +1,116 @@
+package com.sambatech.player.captions;
+
+import android.support.annotation.NonNull;
+import android.text.Html;
+
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.text.Cue;
+import com.google.android.exoplayer2.ui.SubtitleView;
+import com.sambatech.player.utils.SambaScheduler;
+
+import java.util.Collections;
+
+/**
+ * Shows the cues of the selected caption on the player's subtitle view, following the playback position.
+ * The position is only checked while playing (and once on pauses and seeks), and the view is only touched
+ * when the visible cue changes.
+ */
+public final class CaptionRenderer implements CaptionManager.Listener {
+
+    /**
+     * Time between position checks while playing (ms).
+     */
+    public static final long UPDATE_INTERVAL = 100;
+
+    private final Player player;
+    private final SubtitleView view;
+    private final CaptionManager manager;
+    // on screen
+    private CaptionIndex index;
+    private int cue = CaptionIndex.NOT_FOUND;
+
+    private final Runnable updater = new Runnable() {
+        @Override
+        public void run() {
+            update();
+        }
+    };
+
+    private final Player.DefaultEventListener playerListener = new Player.DefaultEventListener() {
+        @Override
+        public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
+            updateSchedule();
+        }
+
+        @Override
+        public void onPositionDiscontinuity(int reason) {
+            // seeks while paused
+            update();
+        }
+    };
+
+    public CaptionRenderer(@NonNull Player player, @NonNull SubtitleView view, @NonNull CaptionManager manager) {
+        this.player = player;
+        this.view = view;
+        this.manager = manager;
+
+        player.addListener(playerListener);
+        manager.addListener(this);
+        onCaptionChanged(manager.getSelectedIndex());
+    }
+
+    @Override
+    public void onCaptionChanged(int selectedIndex) {
+        clear();
+        updateSchedule();
+    }
+
+    public void release() {
+        player.removeListener(playerListener);
+        manager.removeListener(this);
+        SambaScheduler.getInstance().cancel(updater);
+        clear();
+    }
+
+    private void updateSchedule() {
+        if (manager.getIndex() != null && player.getPlayWhenReady() && player.getPlaybackState() == Player.STATE_READY) {
+            if (!SambaScheduler.getInstance().isScheduled(updater))
+                SambaScheduler.getInstance().schedule(updater, UPDATE_INTERVAL);
+        }
+        else {
+            SambaScheduler.getInstance().cancel(updater);
+            // position where playback stopped
+            update();
+        }
+    }
+
+    private void update() {
+        CaptionIndex current = manager.getIndex();
+
+        if (current == null) return;
+
+        int found = player.isPlayingAd() ? CaptionIndex.NOT_FOUND : current.find(player.getCurrentPosition());
+
+        if (current == index && found == cue) return;
+
+        index = current;
+        cue = found;
+        view.setCues(found != CaptionIndex.NOT_FOUND ? Collections.singletonList(new Cue(toCueText(current.getText(found)))) : null);
+    }
+
+    /**
+     * Applies the SRT markup ({@code <b>}, {@code <i>}, {@code <u>}, {@code <font color>}) of a cue, as the ExoPlayer decoder did.
+     *
+     * @param text Cue text as parsed (lines separated by '\n')
+     * @return The styled text
+     */
+    static CharSequence toCueText(@NonNull String text) {
+        return Html.fromHtml(text.replace("\n", "<br>"));
+    }
+
+    private void clear() {
+        index = null;
+        cue = CaptionIndex.NOT_FOUND;
+        view.setCues(null);
+    }
+}
@@ -0,0 +1,184 @@
+package com.sambatech.player.captions;
+
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceInputStream;
+import com.google.android.exoplayer2.upstream.DataSpec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Parsed captions kept on disk (one file per caption URL, named by its SHA-1), so downloaded captions
+ * are ready to be shown without parsing them again.
+ */
+public final class CaptionStore {
+
+    private static final String EXTENSION = ".idx";
+
+    private final File directory;
+
+    /**
+     * @param directory Where the indexes are stored (created if needed)
+     */
+    public CaptionStore(@NonNull File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Reads the stored cues of a caption (blocking).
+     *
+     * @param url The caption URL
+     * @param index Index receiving the cues
+     * @return Whether the caption was stored
+     */
+    public boolean load(@NonNull String url, @NonNull CaptionIndex index) {
+        File file = getFile(url);
+
+        if (!file.exists()) {
+            // named by the previous scheme, never read again
+            getLegacyFile(url).delete();
+            return false;
+        }
+
+        DataInputStream in = null;
+
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+            // file name is a digest of the URL, the URL itself guards against misplaced files
+            if (!url.equals(in.readUTF())) return false;
+
+            index.read(in);
+            return true;
+        }
+        catch (IOException e) {
+            Log.w(CaptionStore.class.getSimpleName(), "Discarding invalid caption index: " + url, e);
+            file.delete();
+            return false;
+        }
+        finally {
+            close(in);
+        }
+    }
+
+    /**
+     * Writes the cues of a caption (blocking).
+     * The previous file is only replaced once the new one is complete.
+     *
+     * @param url The caption URL
+     * @param index The parsed cues
+     */
+    public void save(@NonNull String url, @NonNull CaptionIndex index) {
+        File file = getFile(url);
+        File tmp = new File(directory, file.getName() + ".tmp");
+        DataOutputStream out = null;
+
+        try {
+            if (!directory.exists() && !directory.mkdirs())
+                throw new IOException("Failed to create directory: " + directory);
+
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeUTF(url);
+            index.write(out);
+            out.close();
+            out = null;
+
+            if (!tmp.renameTo(file))
+                throw new IOException("Failed to rename " + tmp);
+        }
+        catch (IOException e) {
+            Log.w(CaptionStore.class.getSimpleName(), "Failed to store caption index: " + url, e);
+            tmp.delete();
+        }
+        finally {
+            close(out);
+        }
+    }
+
+    /**
+     * Parses a caption and stores its cues (blocking, e.g. once its download is completed).
+     *
+     * @param url The caption URL
+     * @param dataSource Source of the caption file
+     * @return Whether the caption was stored
+     */
+    public boolean build(@NonNull String url, @NonNull DataSource dataSource) {
+        CaptionIndex index = new CaptionIndex();
+        DataSourceInputStream in = new DataSourceInputStream(dataSource, new DataSpec(Uri.parse(url)));
+
+        try {
+            new CaptionParser(index).parse(in);
+        }
+        catch (IOException e) {
+            Log.w(CaptionStore.class.getSimpleName(), "Failed to parse captions: " + url, e);
+            return false;
+        }
+        finally {
+            close(in);
+        }
+
+        save(url, index);
+
+        return true;
+    }
+
+    /**
+     * Deletes the stored cues of a caption.
+     *
+     * @param url The caption URL
+     */
+    public void remove(@NonNull String url) {
+        getFile(url).delete();
+        getLegacyFile(url).delete();
+    }
+
+    private File getFile(String url) {
+        return new File(directory, sha1(url) + EXTENSION);
+    }
+
+    /**
+     * @return Previous file name (32-bit hash of the URL, too collision prone)
+     */
+    private File getLegacyFile(String url) {
+        return new File(directory, Integer.toHexString(url.hashCode()) + EXTENSION);
+    }
+
+    private static String sha1(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(value.getBytes("UTF-8"));
+            StringBuilder hex = new StringBuilder(digest.length*2);
+
+            for (byte b : digest)
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+
+            return hex.toString();
+        }
+        catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            // both are always available on Android
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable == null) return;
+
+        try {
+            closeable.close();
+        }
+        catch (IOException ignored) {}
+    }
+}
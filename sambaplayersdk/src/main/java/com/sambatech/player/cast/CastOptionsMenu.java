@@ -15,10 +15,11 @@ import android.widget.TextView;
 import com.google.android.exoplayer2.ui.PlaybackControlView;
 import com.sambatech.player.R;
 import com.sambatech.player.adapter.CastCaptionsAdapter;
+import com.sambatech.player.captions.CaptionManager;
 import com.sambatech.player.model.SambaMedia;
 import com.sambatech.player.utils.OptionsMenuLayer;
 
-import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by luizbyrro on 20/02/2018.
@@ -51,7 +52,7 @@ public class CastOptionsMenu implements OptionsMenuLayer.OptionsMenuCallback {
     private View captionSheetView;
     private View speedSheetView;
 
-    public CastOptionsMenu(FrameLayout container, Context context, CastPlayer castPlayer, PlaybackControlView playbackControlView, ArrayList<SambaMedia.Caption> captions) {
+    public CastOptionsMenu(FrameLayout container, Context context, CastPlayer castPlayer, PlaybackControlView playbackControlView, CaptionManager captionManager) {
         this.container = container;
         this.context = context;
         this.castPlayer = castPlayer;
@@ -63,9 +64,9 @@ public class CastOptionsMenu implements OptionsMenuLayer.OptionsMenuCallback {
         optionsMenuLayer.setHdButtonVisibility(false);
         optionsMenuLayer.setSpeedButtonVisibility(false);
         optionsMenuLayer.setCaptionsButtonVisibility(false);
-        if (captions != null || captions.size() > 0) {
+        if (captionManager != null && captionManager.getCaptions().size() > 0) {
             optionsMenuLayer.setCaptionsButtonVisibility(true);
-            initCaptionMenu(captions);
+            initCaptionMenu(captionManager);
         }
     }
 
@@ -83,12 +84,15 @@ public class CastOptionsMenu implements OptionsMenuLayer.OptionsMenuCallback {
             optionsMenuLayer.hideMenu();
     }
 
-    private void initCaptionMenu(final ArrayList<SambaMedia.Caption> captions) {
+    private void initCaptionMenu(final CaptionManager captionManager) {
+        final List<SambaMedia.Caption> captions = captionManager.getCaptions();
         captionSheetView = ((Activity) context).getLayoutInflater().inflate(R.layout.action_sheet, null);
         TextView title = (TextView) captionSheetView.findViewById(R.id.action_sheet_title);
         title.setText(context.getString(R.string.captions));
         final ListView menuList = (ListView) captionSheetView.findViewById(R.id.sheet_list);
         final CastCaptionsAdapter adapter = new CastCaptionsAdapter(captions, context);
+        if (captionManager.getSelectedIndex() != -1)
+            adapter.currentIndex = captionManager.getSelectedIndex();
         menuList.setAdapter(adapter);
         menuList.setOnItemClickListener(new AdapterView.OnItemClickListener() {
             @Override
@@ -98,6 +102,8 @@ public class CastOptionsMenu implements OptionsMenuLayer.OptionsMenuCallback {
                 adapter.currentIndex = position;
                 SambaMedia.Caption caption = captions.get(position);
                 castPlayer.sendSubtitle(caption.language);
+                // same selection when playback returns to the device
+                captionManager.select(position);
                 menuList.smoothScrollToPosition(0);
                 adapter.currentIndex = position;
             }
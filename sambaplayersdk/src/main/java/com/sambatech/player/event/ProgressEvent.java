@@ -0,0 +1,99 @@
+package com.sambatech.player.event;
+
+/**
+ * PROGRESS event with a primitive payload, pooled by the bus to avoid allocations on every dispatch.
+ * Instances are recycled after being delivered, so listeners must not keep references to them.
+ */
+public final class ProgressEvent extends SambaEvent {
+
+	private static final int MAX_POOL_SIZE = 8;
+	private static final Object poolLock = new Object();
+	private static ProgressEvent pool;
+	private static int poolSize;
+
+	private ProgressEvent next;
+	private float time;
+	private float duration;
+	private Object[] boxed;
+
+	private ProgressEvent() {
+		super(SambaPlayerListener.EventType.PROGRESS);
+	}
+
+	/**
+	 * Retrieves an instance from the pool (or creates a new one).
+	 * @param time Current time (secs)
+	 * @param duration Media duration (secs)
+	 * @return The event
+	 */
+	static ProgressEvent obtain(float time, float duration) {
+		ProgressEvent event;
+
+		synchronized (poolLock) {
+			event = pool;
+
+			if (event != null) {
+				pool = event.next;
+				event.next = null;
+				--poolSize;
+			}
+		}
+
+		if (event == null)
+			event = new ProgressEvent();
+
+		event.time = time;
+		event.duration = duration;
+		event.boxed = null;
+
+		return event;
+	}
+
+	/**
+	 * Returns the instance to the pool.
+	 */
+	void recycle() {
+		synchronized (poolLock) {
+			if (poolSize == MAX_POOL_SIZE) return;
+
+			next = pool;
+			pool = this;
+			++poolSize;
+		}
+	}
+
+	ProgressEvent copy() {
+		return obtain(time, duration);
+	}
+
+	/**
+	 * @return Current time (secs)
+	 */
+	public float getTime() {
+		return time;
+	}
+
+	/**
+	 * @return Media duration (secs)
+	 */
+	public float getDuration() {
+		return duration;
+	}
+
+	@Override
+	public Object getData() {
+		return getDataAll()[0];
+	}
+
+	/**
+	 * Boxes the payload (only for listeners still reading it through the generic API).
+	 * @return Current time and duration
+	 */
+	@Override
+	public Object[] getDataAll() {
+		if (boxed == null)
+			boxed = new Object[]{time, duration};
+
+		return boxed;
+	}
+}
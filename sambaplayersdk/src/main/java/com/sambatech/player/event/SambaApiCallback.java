@@ -3,6 +3,9 @@ package com.sambatech.player.event;
 import com.sambatech.player.model.SambaMedia;
 import com.sambatech.player.model.SambaMediaRequest;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Listeners representing server responses.
  *
@@ -22,6 +25,23 @@ public abstract class SambaApiCallback {
 	 */
 	public void onMediaListResponse(SambaMedia[] mediaList) {}
 
+	/**
+	 * Fired up after a set of responses from the server.
+	 * Both arrays follow the order of the requests, failed requests have null medias.
+	 * By default forwards the succeeded medias to {@link #onMediaListResponse(SambaMedia[])}.
+	 * @param mediaList SambaMedia (null on failure)
+	 * @param latencies Time (ms) each request took to be resolved since the list request
+	 */
+	public void onMediaListResponse(SambaMedia[] mediaList, long[] latencies) {
+		List<SambaMedia> medias = new ArrayList<>();
+
+		for (SambaMedia media : mediaList)
+			if (media != null)
+				medias.add(media);
+
+		onMediaListResponse(medias.toArray(new SambaMedia[medias.size()]));
+	}
+
 	/**
 	 *
 	 * Fired up after an error response from the server.
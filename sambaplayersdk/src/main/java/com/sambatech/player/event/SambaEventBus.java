@@ -1,13 +1,22 @@
 package com.sambatech.player.event;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
+import com.sambatech.player.event.SambaPlayerListener.EventType;
+
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
-import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * @author Leandro Zanol - 10/12/15
@@ -18,12 +27,47 @@ public class SambaEventBus {
 
 	private SambaEventBus() {}
 
+	/**
+	 * Thread where a listener receives its events.
+	 */
+	public enum DeliveryMode {
+		/** Same thread the event was posted from (default) */
+		POSTING,
+		/** Main (UI) thread */
+		MAIN,
+		/** Background thread shared by the bus, events are delivered in order */
+		BACKGROUND
+	}
+
+	/**
+	 * Observes whether event types have subscribers (e.g. to only produce frequent events on demand).
+	 */
+	public interface DemandListener {
+		/**
+		 * Fired up when an event type gets its first subscriber or loses its last one.
+		 * May be called from any thread (never while holding the bus lock), the same state may be reported twice.
+		 * @param type The event type
+		 * @param hasSubscribers Whether there are subscribers for the event type
+		 */
+		void onDemandChanged(EventType type, boolean hasSubscribers);
+	}
+
 	/**
 	 * Registers an event.
+	 * Events are delivered on the posting thread.
 	 * @param listener listener object
 	 */
 	public static void subscribe(Object listener) {
-		_eventBus.subscribe(listener);
+		_eventBus.subscribe(listener, DeliveryMode.POSTING);
+	}
+
+	/**
+	 * Registers an event.
+	 * @param listener listener object
+	 * @param mode Thread where the listener receives its events (e.g. BACKGROUND for heavy listeners like analytics)
+	 */
+	public static void subscribe(Object listener, DeliveryMode mode) {
+		_eventBus.subscribe(listener, mode);
 	}
 
 	/**
@@ -34,102 +78,330 @@ public class SambaEventBus {
 		_eventBus.unsubscribe(listener);
 	}
 
+	/**
+	 * Indicates whether an event type has subscribers.
+	 * @param type The event type
+	 * @return True if there is any subscriber
+	 */
+	public static boolean hasSubscribers(EventType type) {
+		return _eventBus.hasSubscribers(type);
+	}
+
+	public static void addDemandListener(DemandListener listener) {
+		_eventBus.demandListeners.addIfAbsent(listener);
+	}
+
+	public static void removeDemandListener(DemandListener listener) {
+		_eventBus.demandListeners.remove(listener);
+	}
+
 	/**
 	 * Triggers an event.
+	 * May be called from any thread.
 	 * @param e a particular event
 	 */
 	public static void post(SambaEvent e) {
 		_eventBus.post(e);
 	}
 
-	private static class EventBus {
-		private HashMap<String, List<Object>> listeners = new HashMap<>();
-		private List<Object> postponedUnsubscribes;
+	/**
+	 * Triggers a PROGRESS event through a pooled {@link ProgressEvent} (no allocations per post).
+	 * May be called from any thread.
+	 * @param time Current time (secs)
+	 * @param duration Media duration (secs)
+	 */
+	public static void postProgress(float time, float duration) {
+		ProgressEvent e = ProgressEvent.obtain(time, duration);
+
+		_eventBus.post(e);
+		e.recycle();
+	}
+
+	/**
+	 * Subscribed listener (resolved once on subscription).
+	 */
+	private static final class Subscriber {
+		final SambaPlayerListener listener;
+		final DeliveryMode mode;
+		// pending deliveries are dropped after unsubscribing
+		volatile boolean active = true;
+
+		Subscriber(SambaPlayerListener listener, DeliveryMode mode) {
+			this.listener = listener;
+			this.mode = mode;
+		}
+	}
 
-		public void subscribe(Object listener) {
-			String type = listener.getClass().getSuperclass().getSimpleName();
-			String k;
+	/**
+	 * Dispatches events through direct calls to the listeners, without reflection nor allocations per post
+	 * (on posting thread deliveries).
+	 * Subscriber arrays are copy-on-write and read without locking, so events may be posted from any thread
+	 * and (un)subscribing while dispatching is safe.
+	 */
+	private static class EventBus {
+		private static final Subscriber[] EMPTY = new Subscriber[0];
 
-			for (Method m : listener.getClass().getDeclaredMethods()) {
-				if (!Modifier.isPublic(m.getModifiers()))
-					continue;
+		// "onXxx" method name -> event type
+		private static final Map<String, EventType> methodTypes = new HashMap<>();
 
-				k = String.format("%s:%s", type, m.getName().substring(2)); // rm "on"
+		static {
+			for (EventType type : EventType.values()) {
+				StringBuilder name = new StringBuilder("on");
 
-				if (!listeners.containsKey(k))
-					listeners.put(k, new ArrayList<>());
+				for (String part : type.name().toLowerCase().split("_"))
+					name.append(Character.toUpperCase(part.charAt(0))).append(part.substring(1));
 
-				listeners.get(k).add(listener);
+				methodTypes.put(name.toString(), type);
 			}
 		}
 
-		public void unsubscribe(Object listener) {
-			if (postponedUnsubscribes != null) {
-				postponedUnsubscribes.add(listener);
+		// subscribers indexed by event type ordinal
+		private final AtomicReferenceArray<Subscriber[]> subscribers = new AtomicReferenceArray<>(EventType.values().length);
+		// listener class -> overridden event methods
+		private final Map<Class<?>, EnumSet<EventType>> resolvedTypes = new HashMap<>();
+		private final CopyOnWriteArrayList<DemandListener> demandListeners = new CopyOnWriteArrayList<>();
+		private final Handler mainHandler = new Handler(Looper.getMainLooper());
+		private ExecutorService backgroundExecutor;
+
+		EventBus() {
+			for (int i = 0; i < subscribers.length(); ++i)
+				subscribers.set(i, EMPTY);
+		}
+
+		public void subscribe(Object listener, DeliveryMode mode) {
+			if (!(listener instanceof SambaPlayerListener)) {
+				Log.w(SambaEventBus.class.getSimpleName(), "Unsupported listener: " + listener);
 				return;
 			}
 
-			String type = listener.getClass().getSuperclass().getSimpleName();
-			String k;
-			List<Object> ltnList;
+			Subscriber subscriber = new Subscriber((SambaPlayerListener) listener, mode);
+			EnumSet<EventType> changed = EnumSet.noneOf(EventType.class);
+
+			synchronized (this) {
+				if (mode == DeliveryMode.BACKGROUND && backgroundExecutor == null)
+					backgroundExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							return new Thread(r, "SambaEventBus");
+						}
+					});
+
+				// listeners are only called for the events they override
+				for (EventType type : resolveTypes(listener.getClass())) {
+					Subscriber[] current = subscribers.get(type.ordinal());
+					Subscriber[] updated = new Subscriber[current.length + 1];
+
+					System.arraycopy(current, 0, updated, 0, current.length);
+					updated[current.length] = subscriber;
+					subscribers.set(type.ordinal(), updated);
+
+					if (current.length == 0)
+						changed.add(type);
+				}
+			}
+
+			notifyDemand(changed);
+		}
+
+		public void unsubscribe(Object listener) {
+			EnumSet<EventType> changed = EnumSet.noneOf(EventType.class);
+
+			synchronized (this) {
+				for (int t = 0; t < subscribers.length(); ++t) {
+					Subscriber[] current = subscribers.get(t);
 
-			for (Method m : listener.getClass().getDeclaredMethods()) {
-				k = String.format("%s:%s", type, m.getName().substring(2));
+					for (int i = 0; i < current.length; ++i) {
+						if (current[i].listener != listener)
+							continue;
 
-				if (listeners.containsKey(k)) {
-					ltnList = listeners.get(k);
+						Subscriber[] updated = current.length == 1 ? EMPTY : new Subscriber[current.length - 1];
 
-					if (ltnList.contains(listener))
-						ltnList.remove(listener);
+						current[i].active = false;
+						System.arraycopy(current, 0, updated, 0, i);
+						System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+						subscribers.set(t, updated);
 
-					if (ltnList.size() == 0)
-						listeners.remove(k);
+						if (updated.length == 0)
+							changed.add(EventType.values()[t]);
+						break;
+					}
 				}
 			}
+
+			notifyDemand(changed);
+		}
+
+		boolean hasSubscribers(EventType type) {
+			return subscribers.get(type.ordinal()).length > 0;
+		}
+
+		/**
+		 * Called outside the bus lock, so demand listeners may (un)subscribe or block without deadlocking.
+		 * The state is read again at this point, so concurrent changes notified out of order still end on the latest one.
+		 */
+		private void notifyDemand(EnumSet<EventType> types) {
+			for (EventType type : types) {
+				boolean hasSubscribers = hasSubscribers(type);
+
+				for (DemandListener listener : demandListeners)
+					listener.onDemandChanged(type, hasSubscribers);
+			}
 		}
 
 		public void post(SambaEvent e) {
-			final String[] types = e.getType().toString().toLowerCase().split("_");
-			String t = "";
+			if (!(e.getType() instanceof EventType))
+				return;
 
-			for (String type : types)
-				t += type.substring(0, 1).toUpperCase() + type.substring(1);
+			// snapshot: changes made by listeners take effect on the next post
+			final Subscriber[] current = subscribers.get(((EventType) e.getType()).ordinal());
 
-			final String k = String.format("%s:%s", e.getType().getClass().getEnclosingClass().getSimpleName(), t);
+			for (Subscriber subscriber : current) {
+				switch (subscriber.mode) {
+					case MAIN:
+						if (Looper.myLooper() == Looper.getMainLooper())
+							deliver(subscriber, e);
+						else enqueue(mainHandler, subscriber, e);
+						break;
 
-			if (!listeners.containsKey(k))
+					case BACKGROUND:
+						enqueue(backgroundExecutor, subscriber, e);
+						break;
+
+					default:
+						deliver(subscriber, e);
+						break;
+				}
+			}
+		}
+
+		private void enqueue(Handler handler, Subscriber subscriber, SambaEvent e) {
+			handler.post(Delivery.obtain(subscriber, e));
+		}
+
+		private void enqueue(Executor executor, Subscriber subscriber, SambaEvent e) {
+			executor.execute(Delivery.obtain(subscriber, e));
+		}
+
+		private static void deliver(Subscriber subscriber, SambaEvent e) {
+			if (!subscriber.active)
 				return;
 
 			try {
-				// postpone call for lock purposes
-				postponedUnsubscribes = new ArrayList<>();
+				dispatch(subscriber.listener, e);
+			}
+			catch (Exception exp) {
+				Log.i(SambaEventBus.class.getSimpleName(), "Error dispatching event " + e.getType(), exp);
+			}
+		}
+
+		private EnumSet<EventType> resolveTypes(Class<?> cls) {
+			EnumSet<EventType> types = resolvedTypes.get(cls);
 
-                Object listener;
-				Method m;
+			if (types != null)
+				return types;
 
-				for (ListIterator<Object> iterator = listeners.get(k).listIterator(); iterator.hasNext();) {
-                    listener = iterator.next();
-					m = listener.getClass().getDeclaredMethod("on" + t, SambaEvent.class);
+			types = EnumSet.noneOf(EventType.class);
 
-					if (m != null)
-						m.invoke(listener, e);
-                }
+			for (Class<?> c = cls; c != SambaPlayerListener.class && c != null; c = c.getSuperclass()) {
+				for (Method m : c.getDeclaredMethods()) {
+					EventType type = methodTypes.get(m.getName());
 
-				List<Object> unsubs = postponedUnsubscribes;
+					if (type != null && Modifier.isPublic(m.getModifiers()))
+						types.add(type);
+				}
+			}
 
-				// release locker
-				postponedUnsubscribes = null;
+			resolvedTypes.put(cls, types);
 
-				if (unsubs != null && unsubs.size() > 0) {
-					for (Object ltn : unsubs)
-						unsubscribe(ltn);
+			return types;
+		}
 
-					unsubs.clear();
+		private static void dispatch(SambaPlayerListener listener, SambaEvent e) {
+			switch ((EventType) e.getType()) {
+				case LOAD: listener.onLoad(e); break;
+				case DESTROY: listener.onDestroy(e); break;
+				case START: listener.onStart(e); break;
+				case PLAY: listener.onPlay(e); break;
+				case PAUSE: listener.onPause(e); break;
+				case STOP: listener.onStop(e); break;
+				case PROGRESS:
+					if (e instanceof ProgressEvent)
+						listener.onProgress(((ProgressEvent) e).getTime(), ((ProgressEvent) e).getDuration());
+					// events built through the generic API
+					else if (e.getDataAll().length > 1)
+						listener.onProgress(((Number) e.getDataAll()[0]).floatValue(), ((Number) e.getDataAll()[1]).floatValue());
+
+					listener.onProgress(e);
+					break;
+				case FULLSCREEN: listener.onFullscreen(e); break;
+				case FULLSCREEN_EXIT: listener.onFullscreenExit(e); break;
+				case FINISH: listener.onFinish(e); break;
+				case RESIZE: listener.onResize(e); break;
+				case CLICK: listener.onClick(e); break;
+				case ERROR: listener.onError(e); break;
+				case PORTRAIT: listener.onPortrait(e); break;
+				case LANDSCAPE: listener.onLandscape(e); break;
+				case CAST_CONNECT: listener.onCastConnect(e); break;
+				case CAST_DISCONNECT: listener.onCastDisconnect(e); break;
+				case CAST_PLAY: listener.onCastPlay(e); break;
+				case CAST_PAUSE: listener.onCastPause(e); break;
+				case CAST_FINISH: listener.onCastFinish(e); break;
+			}
+		}
+	}
+
+	/**
+	 * Pooled asynchronous delivery.
+	 * Pooled events are copied, since the posted instance is recycled right after posting.
+	 */
+	private static final class Delivery implements Runnable {
+		private static final int MAX_POOL_SIZE = 16;
+		private static final Object poolLock = new Object();
+		private static Delivery pool;
+		private static int poolSize;
+
+		private Delivery next;
+		private Subscriber subscriber;
+		private SambaEvent event;
+
+		static Delivery obtain(Subscriber subscriber, SambaEvent e) {
+			Delivery delivery;
+
+			synchronized (poolLock) {
+				delivery = pool;
+
+				if (delivery != null) {
+					pool = delivery.next;
+					delivery.next = null;
+					--poolSize;
 				}
 			}
-			catch (Exception exp) {
-				// it's okay not finding the methods in current class instance (getDeclaredMethod())
-				Log.i(getClass().getSimpleName(), "Error trying to lookup or invoke method.", exp);
+
+			if (delivery == null)
+				delivery = new Delivery();
+
+			delivery.subscriber = subscriber;
+			delivery.event = e instanceof ProgressEvent ? ((ProgressEvent) e).copy() : e;
+
+			return delivery;
+		}
+
+		@Override
+		public void run() {
+			EventBus.deliver(subscriber, event);
+
+			if (event instanceof ProgressEvent)
+				((ProgressEvent) event).recycle();
+
+			subscriber = null;
+			event = null;
+
+			synchronized (poolLock) {
+				if (poolSize == MAX_POOL_SIZE) return;
+
+				next = pool;
+				pool = this;
+				++poolSize;
 			}
 		}
 	}
@@ -71,10 +71,19 @@ public abstract class SambaPlayerListener {
 
 	/**
 	 * OnProgress player fired as the player is watched.
+	 * The event may be pooled, so it must not be kept after the call.
 	 * @param event PROGRESS EventType.event
 	 */
 	public void onProgress(SambaEvent event) {}
 
+	/**
+	 * OnProgress player fired as the player is watched (without boxing, preferred for frequent events).
+	 * Fired right before {@link #onProgress(SambaEvent)}.
+	 * @param time Current time (secs)
+	 * @param duration Media duration (secs)
+	 */
+	public void onProgress(float time, float duration) {}
+
 	/**
 	 * OnFullscreen player fired when the player enters the fullscreen mode.
 	 * @param event FULLSCREEN EventType.event
@@ -7,6 +7,7 @@ import android.util.Base64;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.DefaultRenderersFactory;
 import com.google.android.exoplayer2.ExoPlayerFactory;
+import com.google.android.exoplayer2.Player;
 import com.google.android.exoplayer2.SimpleExoPlayer;
 import com.google.android.exoplayer2.drm.DefaultDrmSessionManager;
 import com.google.android.exoplayer2.drm.FrameworkMediaCrypto;
@@ -17,13 +18,11 @@ import com.google.android.exoplayer2.trackselection.AdaptiveTrackSelection;
 import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
 import com.google.android.exoplayer2.upstream.BandwidthMeter;
 import com.google.android.exoplayer2.upstream.DataSource;
-import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
 import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
-import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
 import com.google.android.exoplayer2.upstream.TransferListener;
-import com.google.android.exoplayer2.util.Util;
 import com.sambatech.player.model.SambaMediaConfig;
-import com.sambatech.player.offline.SambaDownloadManager;
+import com.sambatech.player.network.BandwidthEstimator;
+import com.sambatech.player.network.SambaTransport;
 
 /**
  * Created by luizbyrro on 29/11/2017.
@@ -41,14 +40,24 @@ public class PlayerInstanceDefault {
 
     private DefaultDrmSessionManager drmSessionManager;
     private FrameworkMediaDrm mediaDrm;
+    private SimpleExoPlayer player;
+
+    /**
+     * Creates a player instance without DRM support (e.g. for pooling).
+     *
+     * @param context Reference to the current context
+     */
+    public PlayerInstanceDefault(Context context) {
+        this(context, null);
+    }
 
     public PlayerInstanceDefault(Context context, SambaMediaConfig media) {
 
-        boolean isDRM = media.drmRequest != null;
+        boolean isDRM = media != null && media.drmRequest != null;
 
         this.context = context;
         this.mainHandler = new Handler();
-        this.bandwidthMeter = new DefaultBandwidthMeter();
+        this.bandwidthMeter = BandwidthEstimator.getInstance(context).getBandwidthMeter();
         this.adaptiveTrackSelectionFactory = new AdaptiveTrackSelection.Factory(bandwidthMeter);
         this.trackSelector = new DefaultTrackSelector(adaptiveTrackSelectionFactory);
 
@@ -68,17 +77,16 @@ public class PlayerInstanceDefault {
         this.renderersFactory = new DefaultRenderersFactory(this.context);
 
 //        this.mediaDataSourceFactory = new SambaDataSourceFactory(this.context, Util.getUserAgent(this.context, "mediaPlayerSample"), (TransferListener<? super DataSource>) bandwidthMeter);
-        this.mediaDataSourceFactory = new DefaultDataSourceFactory(this.context, Util.getUserAgent(this.context, "mediaPlayerSample"), (TransferListener) bandwidthMeter);
+        this.mediaDataSourceFactory = new DefaultDataSourceFactory(this.context, (TransferListener) bandwidthMeter,
+                SambaTransport.getInstance().buildDataSourceFactory((TransferListener) bandwidthMeter));
     }
 
     private DefaultDrmSessionManager buildOnlineDrmSessionManager(SambaMediaConfig media) throws UnsupportedDrmException {
 
-        String userAgent = SambaDownloadManager.getInstance().isConfigured() ? SambaDownloadManager.getInstance().getUserAgent() : Util.getUserAgent(context.getApplicationContext(), "SambaPlayer");
-
         return new DefaultDrmSessionManager<>(
                 C.WIDEVINE_UUID,
                 FrameworkMediaDrm.newInstance(C.WIDEVINE_UUID),
-                new HttpMediaDrmCallback(media.drmRequest.getLicenseUrl(), new DefaultHttpDataSourceFactory(userAgent)),
+                new HttpMediaDrmCallback(media.drmRequest.getLicenseUrl(), SambaTransport.getInstance().buildDataSourceFactory(null)),
                 null
         );
     }
@@ -96,7 +104,7 @@ public class PlayerInstanceDefault {
                     C.WIDEVINE_UUID,
                     mediaDrm,
                     new HttpMediaDrmCallback(media.drmRequest.getLicenseUrl(),
-                            new DefaultHttpDataSourceFactory(SambaDownloadManager.getInstance().getUserAgent())),
+                            SambaTransport.getInstance().buildDataSourceFactory(null)),
                     null
             );
 
@@ -113,6 +121,41 @@ public class PlayerInstanceDefault {
         return ExoPlayerFactory.newSimpleInstance(this.context, renderersFactory, trackSelector, drmSessionManager);
     }
 
+    /**
+     * Retrieves the player bound to this instance, creating it on first use.
+     * Must be called from the main thread.
+     *
+     * @return The player
+     */
+    public SimpleExoPlayer getPlayer() {
+        if (player == null)
+            player = createPlayerInstance();
+
+        return player;
+    }
+
+    /**
+     * Whether this instance can play DRM protected media.
+     */
+    public boolean hasDrm() {
+        return drmSessionManager != null;
+    }
+
+    /**
+     * Resets the player and track selection state so the instance can be reused by another media.
+     */
+    public void reset() {
+        if (player != null) {
+            player.stop(true);
+            player.setPlayWhenReady(false);
+            player.setRepeatMode(Player.REPEAT_MODE_OFF);
+            player.setPlaybackParameters(null);
+            player.setVolume(1f);
+        }
+
+        trackSelector.setParameters(new DefaultTrackSelector.ParametersBuilder().build());
+    }
+
     public void destroy() {
         mainHandler = null;
         bandwidthMeter = null;
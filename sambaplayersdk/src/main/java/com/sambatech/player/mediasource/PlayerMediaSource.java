@@ -8,8 +8,6 @@ import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.ext.ima.ImaAdsLoader;
 import com.google.android.exoplayer2.source.MediaSource;
-import com.google.android.exoplayer2.source.MergingMediaSource;
-import com.google.android.exoplayer2.source.SingleSampleMediaSource;
 import com.google.android.exoplayer2.source.TrackGroup;
 import com.google.android.exoplayer2.source.TrackGroupArray;
 import com.google.android.exoplayer2.source.ads.AdsLoader;
@@ -18,15 +16,6 @@ import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
 import com.google.android.exoplayer2.trackselection.MappingTrackSelector;
 import com.google.android.exoplayer2.trackselection.TrackSelection;
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
-import com.google.android.exoplayer2.upstream.DataSource;
-import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
-import com.google.android.exoplayer2.util.MimeTypes;
-import com.sambatech.player.model.SambaMedia;
-import com.sambatech.player.offline.SambaDownloadManager;
-
-import java.util.List;
-
-import static com.google.android.exoplayer2.C.SELECTION_FLAG_AUTOSELECT;
 
 /**
  * Created by luizbyrro on 28/11/2017.
@@ -36,8 +25,6 @@ public class PlayerMediaSource {
 
     protected static final int VIDEO_TRACK_GROUP_INDEX = 0;
     protected static final int VIDEO_RENDERER_INDEX = 0;
-    protected static final int CAPTION_RENDERER_INDEX = 2;
-    protected static final int CAPTION_FORMAT_INDEX = 0;
 
     protected PlayerInstanceDefault playerInstanceDefault;
     protected String url;
@@ -114,38 +101,6 @@ public class PlayerMediaSource {
         playerInstanceDefault.trackSelector.setParameters(parametersBuilder);
     }
 
-    public void addSubtitles(List<SambaMedia.Caption> captions) {
-        if (captions == null || mediaSource == null) return;
-        int captionID = 0;
-        for (SambaMedia.Caption caption : captions) {
-            if (caption.url != null && caption.label != null) {
-                Format subs = Format.createTextSampleFormat(String.valueOf(captionID), MimeTypes.APPLICATION_SUBRIP, SELECTION_FLAG_AUTOSELECT, caption.label);
-                DataSource.Factory datasourceFactory = SambaDownloadManager.getInstance().isConfigured() ? SambaDownloadManager.getInstance().buildDataSourceFactory(): new DefaultHttpDataSourceFactory("userAgent") ;
-                MediaSource subSource = new SingleSampleMediaSource.Factory(datasourceFactory).createMediaSource(Uri.parse(caption.url), subs, C.TIME_UNSET);
-                mediaSource = new MergingMediaSource(mediaSource, subSource);
-                captionID++;
-            }
-        }
-    }
-
-    public TrackGroupArray getSubtitles() {
-        return getTrackGroupArray(CAPTION_RENDERER_INDEX);
-    }
-
-    public void setSubtitle(TrackGroup trackGroup) {
-
-        DefaultTrackSelector.ParametersBuilder parametersBuilder = playerInstanceDefault.trackSelector.buildUponParameters();
-
-        int index = getTrackGroupArray(CAPTION_RENDERER_INDEX).indexOf(trackGroup);
-
-        DefaultTrackSelector.SelectionOverride override = new DefaultTrackSelector.SelectionOverride(index, CAPTION_FORMAT_INDEX);
-
-        parametersBuilder.setSelectionOverride(CAPTION_RENDERER_INDEX, getTrackGroupArray(CAPTION_RENDERER_INDEX), override);
-
-        playerInstanceDefault.trackSelector.setParameters(parametersBuilder);
-
-    }
-
     public void addAds(String url, FrameLayout frameLayout) {
         this.adsLoader = new ImaAdsLoader(playerInstanceDefault.context, Uri.parse(url));
         this.mediaSource = new AdsMediaSource(
@@ -177,11 +132,6 @@ public class PlayerMediaSource {
         return index;
     }
 
-    public void forceCaptionTrackTo(int index) {
-        TrackGroup forcedCaption = getCaptionByIndex(index);
-        if (forcedCaption != null) setSubtitle(forcedCaption);
-    }
-
     public Format getOutputByIndex(int index, boolean isAbrEnabled){
         Format output = null;
         TrackGroup trackGroup = getVideoOutputsTracks();
@@ -200,29 +150,6 @@ public class PlayerMediaSource {
         return output;
     }
 
-    public int getCurrentCaptionTrackIndex(TrackSelectionArray trackSelections) {
-        TrackGroup legenda = null;
-        int index = C.INDEX_UNSET;
-        TrackGroupArray trackGroupArray = getTrackGroupArray(CAPTION_RENDERER_INDEX);
-        if (trackGroupArray != null && trackSelections != null) {
-            if (trackSelections.length > CAPTION_RENDERER_INDEX && trackSelections.get(CAPTION_RENDERER_INDEX) != null)
-                legenda = trackSelections.get(CAPTION_RENDERER_INDEX).getTrackGroup();
-            index = trackGroupArray.indexOf(legenda);
-        }
-        return index;
-    }
-
-    public TrackGroup getCaptionByIndex(int index){
-        TrackGroupArray captions = getTrackGroupArray(CAPTION_RENDERER_INDEX);
-        TrackGroup caption = null;
-        if (captions != null) {
-            if (captions.length > index) {
-                caption = captions.get(index);
-            }
-        }
-        return caption;
-    }
-
     protected void destroy() {
         playerInstanceDefault = null;
         url = null;
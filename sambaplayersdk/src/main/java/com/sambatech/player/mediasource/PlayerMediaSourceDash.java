@@ -8,6 +8,7 @@ import com.google.android.exoplayer2.source.dash.DashChunkSource;
 import com.google.android.exoplayer2.source.dash.DashMediaSource;
 import com.google.android.exoplayer2.source.dash.DefaultDashChunkSource;
 import com.google.android.exoplayer2.source.dash.manifest.DashManifestParser;
+import com.sambatech.player.cache.ManifestCacheDataSource;
 import com.sambatech.player.offline.SambaDownloadManager;
 
 /**
@@ -32,13 +33,14 @@ public class PlayerMediaSourceDash extends PlayerMediaSource implements PlayerMe
         MediaSource mediaSource;
 
         if (SambaDownloadManager.getInstance().isConfigured()) {
-            mediaSource = new DashMediaSource.Factory(SambaDownloadManager.getInstance().buildDataSourceFactory())
+            mediaSource = new DashMediaSource.Factory(new ManifestCacheDataSource.Factory(
+                    SambaDownloadManager.getInstance().buildDataSourceFactory()))
                     .setManifestParser(
                             new FilteringManifestParser<>(new DashManifestParser(), SambaDownloadManager.getInstance().getOfflineStreamKeys(uri)))
                     .createMediaSource(uri);
         } else {
             mediaSource = new DashMediaSource.Factory(dashChunkSourceFactory,
-                    playerInstanceDefault.mediaDataSourceFactory)
+                    new ManifestCacheDataSource.Factory(playerInstanceDefault.mediaDataSourceFactory))
                     .createMediaSource(Uri.parse(url));
         }
 
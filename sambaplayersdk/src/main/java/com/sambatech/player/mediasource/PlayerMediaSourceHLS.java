@@ -5,6 +5,7 @@ import android.net.Uri;
 import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.source.hls.HlsMediaSource;
 import com.google.android.exoplayer2.source.hls.playlist.DefaultHlsPlaylistParserFactory;
+import com.sambatech.player.cache.ManifestCacheDataSource;
 import com.sambatech.player.offline.SambaDownloadManager;
 import com.peer5.sdk.Peer5Sdk;
 
@@ -32,14 +33,14 @@ public class PlayerMediaSourceHLS extends PlayerMediaSource implements PlayerMed
         }
 
         if (!this.getIsLive() && SambaDownloadManager.getInstance().isConfigured()) {
-            mediaSource = new HlsMediaSource.Factory(SambaDownloadManager.getInstance()
-                    .buildDataSourceFactory())
+            mediaSource = new HlsMediaSource.Factory(new ManifestCacheDataSource.Factory(
+                    SambaDownloadManager.getInstance().buildDataSourceFactory()))
                     .setPlaylistParserFactory(
                             new DefaultHlsPlaylistParserFactory(SambaDownloadManager.getInstance()
                                     .getOfflineStreamKeys(uri)))
                     .createMediaSource(uri);
         } else {
-            mediaSource = new HlsMediaSource.Factory(playerInstanceDefault.mediaDataSourceFactory)
+            mediaSource = new HlsMediaSource.Factory(new ManifestCacheDataSource.Factory(playerInstanceDefault.mediaDataSourceFactory))
                     .createMediaSource(uri);
         }
 
@@ -0,0 +1,212 @@
+package com.sambatech.player.mediasource;
+
+import android.app.Activity;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Build;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.exoplayer2.ui.SimpleExoPlayerView;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.sambatech.player.R;
+import com.sambatech.player.network.BandwidthEstimator;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+
+/**
+ * Pool of warm player instances (and pre-inflated player views),
+ * so creating a player for a new media (or retrying after an error) skips the cold-start cost.
+ *
+ * DRM instances are not pooled, since their session manager is bound to the player on creation.
+ * Idle instances are released when the system asks for memory (e.g. the app goes to background).
+ * Must be used from the main thread.
+ */
+public final class PlayerPool {
+
+    /**
+     * Maximum number of idle instances kept warm.
+     */
+    public static final int MAX_IDLE = 2;
+
+    private static final PlayerPool instance = new PlayerPool();
+
+    private final ArrayDeque<PlayerInstanceDefault> idle = new ArrayDeque<>();
+    // bound to an activity, must not keep it alive
+    private WeakReference<SimpleExoPlayerView> idleView;
+    private boolean isRegistered;
+    private int hits;
+    private int misses;
+    private long creationTime;
+    private int creations;
+
+    private PlayerPool() {}
+
+    public static PlayerPool getInstance() {
+        return instance;
+    }
+
+    /**
+     * Pre-creates player instances and a player view (e.g. while the media is being requested).
+     *
+     * @param context The context where the player will be shown
+     * @param count Number of instances to keep warm (limited to {@link #MAX_IDLE})
+     */
+    public void warmUp(@NonNull Context context, int count) {
+        register(context);
+
+        while (idle.size() < Math.min(count, MAX_IDLE))
+            idle.add(create(context.getApplicationContext()));
+
+        SimpleExoPlayerView view = idleView != null ? idleView.get() : null;
+
+        if (view == null || view.getContext() != context)
+            idleView = new WeakReference<>((SimpleExoPlayerView) SimpleExoPlayerView.inflate(context,
+                    R.layout.custom_simple_exo_player_view, null));
+    }
+
+    /**
+     * Retrieves a warm (non DRM) instance or creates a new one.
+     *
+     * @param context Reference to the current context
+     * @return A player instance with its player created
+     */
+    public @NonNull PlayerInstanceDefault acquire(@NonNull Context context) {
+        register(context);
+
+        BandwidthMeter bandwidthMeter = BandwidthEstimator.getInstance(context).getBandwidthMeter();
+        PlayerInstanceDefault playerInstance;
+
+        while ((playerInstance = idle.poll()) != null) {
+            if (playerInstance.bandwidthMeter == bandwidthMeter) {
+                ++hits;
+                return playerInstance;
+            }
+
+            // built for a previous network, its estimate no longer applies
+            destroy(playerInstance);
+        }
+
+        ++misses;
+        return create(context.getApplicationContext());
+    }
+
+    /**
+     * Retrieves the pre-inflated player view for a given context.
+     *
+     * @param context The context where the player will be shown
+     * @return The view or null if none is available for the context
+     */
+    public @Nullable SimpleExoPlayerView acquireView(@NonNull Context context) {
+        SimpleExoPlayerView view = idleView != null ? idleView.get() : null;
+
+        idleView = null;
+
+        return view != null && view.getContext() == context && !isFinishing(context) ? view : null;
+    }
+
+    /**
+     * Returns an instance to the pool (or destroys it if the pool is full or it has DRM).
+     *
+     * @param playerInstance The instance to recycle
+     */
+    public void release(@NonNull PlayerInstanceDefault playerInstance) {
+        if (playerInstance.hasDrm() || idle.size() >= MAX_IDLE) {
+            destroy(playerInstance);
+            return;
+        }
+
+        playerInstance.reset();
+        idle.add(playerInstance);
+    }
+
+    /**
+     * Destroys an instance that must not be reused (e.g. after a codec failure).
+     *
+     * @param playerInstance The instance to destroy
+     */
+    public void discard(@NonNull PlayerInstanceDefault playerInstance) {
+        destroy(playerInstance);
+    }
+
+    /**
+     * Releases all idle instances and views (e.g. when the player screen goes away).
+     */
+    public void clear() {
+        for (PlayerInstanceDefault playerInstance : idle)
+            destroy(playerInstance);
+
+        idle.clear();
+        idleView = null;
+    }
+
+    /**
+     * @return Number of acquisitions served by warm instances
+     */
+    public int getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return Number of acquisitions that had to create an instance
+     */
+    public int getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return Average time to create a player instance (ms), i.e. the startup latency saved by each hit
+     */
+    public long getAverageCreationTime() {
+        return creations > 0 ? creationTime / creations : 0;
+    }
+
+    private void register(Context context) {
+        if (isRegistered) return;
+
+        isRegistered = true;
+        context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                if (level >= TRIM_MEMORY_RUNNING_LOW)
+                    clear();
+            }
+
+            @Override
+            public void onLowMemory() {
+                clear();
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {}
+        });
+    }
+
+    private PlayerInstanceDefault create(Context context) {
+        long start = SystemClock.elapsedRealtime();
+        PlayerInstanceDefault playerInstance = new PlayerInstanceDefault(context);
+
+        playerInstance.getPlayer();
+        creationTime += SystemClock.elapsedRealtime() - start;
+        ++creations;
+
+        return playerInstance;
+    }
+
+    private static void destroy(PlayerInstanceDefault playerInstance) {
+        playerInstance.getPlayer().release();
+        playerInstance.destroy();
+    }
+
+    private static boolean isFinishing(Context context) {
+        if (!(context instanceof Activity)) return false;
+
+        Activity activity = (Activity) context;
+
+        return activity.isFinishing() ||
+                Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 && activity.isDestroyed();
+    }
+}
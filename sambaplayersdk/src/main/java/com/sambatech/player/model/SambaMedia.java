@@ -1,6 +1,5 @@
 package com.sambatech.player.model;
 
-import android.graphics.drawable.Drawable;
 import android.support.annotation.NonNull;
 
 import com.google.gson.annotations.Expose;
@@ -20,8 +19,7 @@ public class SambaMedia {
 	public String adUrl;
 	@Expose
 	public @NonNull transient AdsSettings adsSettings = new AdsSettings();
-	@Expose
-	public transient Drawable thumb;
+	public Thumbnail thumb;
 	public float initialTime = 0f;
 	public float duration = 0f;
 	public boolean isLive;
@@ -0,0 +1,78 @@
+package com.sambatech.player.model;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.widget.ImageView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.resource.bitmap.DownsampleStrategy;
+import com.bumptech.glide.request.RequestOptions;
+import com.bumptech.glide.request.target.SimpleTarget;
+import com.bumptech.glide.request.transition.Transition;
+
+/**
+ * Handle for a media thumbnail, resolved lazily.
+ *
+ * Images are fetched only when requested, cached in memory and disk
+ * and downsampled to the target size.
+ */
+public final class Thumbnail {
+
+	public final String url;
+
+	public Thumbnail(@NonNull String url) {
+		this.url = url;
+	}
+
+	/**
+	 * Loads the thumbnail into a view (downsampled to its size).
+	 *
+	 * @param view The target view
+	 */
+	public void into(@NonNull ImageView view) {
+		Glide.with(view.getContext())
+				.load(url)
+				.into(view);
+	}
+
+	/**
+	 * Resolves the thumbnail asynchronously.
+	 * Must be called from the main thread.
+	 *
+	 * @param context Reference to the current context
+	 * @param width Target width (px)
+	 * @param height Target height (px)
+	 * @param callback Listener for the resolved image
+	 */
+	public void load(@NonNull Context context, int width, int height, @NonNull final Callback callback) {
+		Glide.with(context)
+				.load(url)
+				.apply(new RequestOptions().downsample(DownsampleStrategy.AT_MOST))
+				.into(new SimpleTarget<Drawable>(width, height) {
+					@Override
+					public void onResourceReady(@NonNull Drawable resource, @Nullable Transition<? super Drawable> transition) {
+						callback.onLoad(resource);
+					}
+
+					@Override
+					public void onLoadFailed(@Nullable Drawable errorDrawable) {
+						callback.onError();
+					}
+				});
+	}
+
+	@Override
+	public String toString() {
+		return url;
+	}
+
+	/**
+	 * Listener for thumbnail resolution.
+	 */
+	public interface Callback {
+		void onLoad(@NonNull Drawable thumb);
+		void onError();
+	}
+}
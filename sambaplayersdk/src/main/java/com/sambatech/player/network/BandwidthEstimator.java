@@ -0,0 +1,169 @@
+package com.sambatech.player.network;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Process-wide bandwidth estimator, shared by all player instances.
+ *
+ * The estimate survives player recreation and is persisted per network type,
+ * so adaptive streaming starts from a realistic bitrate instead of the default one.
+ */
+public final class BandwidthEstimator {
+
+    /**
+     * Maximum number of samples kept in history.
+     */
+    public static final int HISTORY_SIZE = 50;
+
+    private static final String PREFS = "samba_bandwidth";
+    private static final long PERSIST_INTERVAL = 10 * 1000;
+
+    private static BandwidthEstimator instance;
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ArrayDeque<Sample> history = new ArrayDeque<>(HISTORY_SIZE);
+    private DefaultBandwidthMeter bandwidthMeter;
+    private NetworkType networkType;
+    private long lastPersistTime;
+
+    private BandwidthEstimator(@NonNull Context context) {
+        this.context = context.getApplicationContext();
+        prefs = this.context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+
+    public static synchronized BandwidthEstimator getInstance(@NonNull Context context) {
+        if (instance == null)
+            instance = new BandwidthEstimator(context);
+
+        return instance;
+    }
+
+    /**
+     * Retrieves the shared bandwidth meter for the current network type.
+     * A new meter (seeded with the persisted estimate) is built when the network type changes.
+     *
+     * @return The bandwidth meter
+     */
+    public synchronized DefaultBandwidthMeter getBandwidthMeter() {
+        NetworkType current = getNetworkType();
+
+        if (bandwidthMeter == null || current != networkType) {
+            final NetworkType type = current;
+            DefaultBandwidthMeter.Builder builder = new DefaultBandwidthMeter.Builder()
+                    .setEventListener(handler, new DefaultBandwidthMeter.EventListener() {
+                        @Override
+                        public void onBandwidthSample(int elapsedMs, long bytes, long bitrate) {
+                            record(type, bitrate);
+                        }
+                    });
+            long estimate = getEstimate(type);
+
+            if (estimate > 0)
+                builder.setInitialBitrateEstimate(estimate);
+
+            networkType = type;
+            bandwidthMeter = builder.build();
+        }
+
+        return bandwidthMeter;
+    }
+
+    /**
+     * @return The current bitrate estimate (bps) or 0 if unknown
+     */
+    public synchronized long getEstimate() {
+        return bandwidthMeter != null ? bandwidthMeter.getBitrateEstimate() : getEstimate(getNetworkType());
+    }
+
+    /**
+     * @param type The network type
+     * @return The persisted bitrate estimate (bps) for a network type or 0 if unknown
+     */
+    public long getEstimate(@NonNull NetworkType type) {
+        return prefs.getLong(type.name(), 0);
+    }
+
+    /**
+     * @return Latest bandwidth samples (oldest first)
+     */
+    public synchronized List<Sample> getHistory() {
+        return new ArrayList<>(history);
+    }
+
+    private synchronized void record(NetworkType type, long bitrate) {
+        // meter built for a previous network (still used by a running player), the sample belongs to another one
+        if (type != getNetworkType()) return;
+
+        long now = SystemClock.elapsedRealtime();
+
+        if (history.size() == HISTORY_SIZE)
+            history.poll();
+
+        history.add(new Sample(System.currentTimeMillis(), type, bitrate));
+
+        if (now - lastPersistTime < PERSIST_INTERVAL) return;
+
+        lastPersistTime = now;
+
+        // the current meter may not have been rebuilt for this network yet
+        long estimate = type == networkType ? bandwidthMeter.getBitrateEstimate() : bitrate;
+
+        prefs.edit().putLong(type.name(), estimate).apply();
+    }
+
+    private NetworkType getNetworkType() {
+        ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo info = connectivityManager != null ? connectivityManager.getActiveNetworkInfo() : null;
+
+        if (info == null)
+            return NetworkType.OTHER;
+
+        switch (info.getType()) {
+            case ConnectivityManager.TYPE_WIFI:
+            case ConnectivityManager.TYPE_ETHERNET:
+                return NetworkType.WIFI;
+
+            case ConnectivityManager.TYPE_MOBILE:
+                return NetworkType.CELLULAR;
+
+            default:
+                return NetworkType.OTHER;
+        }
+    }
+
+    public enum NetworkType {
+        WIFI,
+        CELLULAR,
+        OTHER
+    }
+
+    /**
+     * Bandwidth sample.
+     */
+    public static final class Sample {
+        public final long timestamp;
+        public final NetworkType networkType;
+        public final long bitrate;
+
+        Sample(long timestamp, NetworkType networkType, long bitrate) {
+            this.timestamp = timestamp;
+            this.networkType = networkType;
+            this.bitrate = bitrate;
+        }
+    }
+}
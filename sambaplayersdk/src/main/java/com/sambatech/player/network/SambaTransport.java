@@ -0,0 +1,183 @@
+package com.sambatech.player.network;
+
+import android.os.Build;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.exoplayer2.ExoPlayerLibraryInfo;
+import com.google.android.exoplayer2.ext.okhttp.OkHttpDataSourceFactory;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.sambatech.player.BuildConfig;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dns;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP transport shared by the whole SDK (metadata, captions, tracking, DRM and media).
+ *
+ * A single client keeps one connection pool (keep-alive, HTTP/2 when available) and a DNS cache,
+ * so handshakes are amortized across the playback session.
+ * A custom client may be plugged through {@link #init(OkHttpClient)}.
+ */
+public final class SambaTransport {
+
+    public static final int DEFAULT_CONNECT_TIMEOUT = 8000;
+    public static final int DEFAULT_READ_TIMEOUT = 8000;
+
+    /**
+     * Time to live for resolved host addresses.
+     */
+    public static final long DNS_TTL = 5 * 60 * 1000;
+
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    private static final long KEEP_ALIVE_DURATION = 5 * 60 * 1000;
+
+    private static volatile SambaTransport instance;
+
+    private final OkHttpClient client;
+    private final String userAgent;
+
+    private SambaTransport(@NonNull OkHttpClient client) {
+        this.client = client;
+        userAgent = String.format("SambaPlayer/%s (Linux;Android %s) %s", BuildConfig.VERSION_NAME,
+                Build.VERSION.RELEASE, ExoPlayerLibraryInfo.VERSION_SLASHY);
+    }
+
+    public static SambaTransport getInstance() {
+        if (instance == null) {
+            synchronized (SambaTransport.class) {
+                if (instance == null)
+                    init(DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * Configures the transport timeouts.
+     * Should be called before any request (e.g. on application startup).
+     *
+     * @param connectTimeout Connection timeout (ms)
+     * @param readTimeout Read timeout (ms)
+     */
+    public static synchronized void init(int connectTimeout, int readTimeout) {
+        init(new OkHttpClient.Builder()
+                .connectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeout, TimeUnit.MILLISECONDS)
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_DURATION, TimeUnit.MILLISECONDS))
+                .build());
+    }
+
+    /**
+     * Plugs a custom client (e.g. to share the application's connection pool).
+     * Should be called before any request (e.g. on application startup).
+     *
+     * @param client The client to use
+     */
+    public static synchronized void init(@NonNull OkHttpClient client) {
+        // derived clients share pool and dispatcher
+        instance = new SambaTransport(client.newBuilder()
+                .dns(new CachingDns(client.dns(), DNS_TTL))
+                .build());
+    }
+
+    public OkHttpClient getClient() {
+        return client;
+    }
+
+    public String getUserAgent() {
+        return userAgent;
+    }
+
+    /**
+     * Creates a request builder with the SDK defaults (e.g. user agent).
+     *
+     * @param url The request URL
+     * @return The request builder
+     */
+    public Request.Builder newRequest(@NonNull String url) {
+        return new Request.Builder()
+                .url(url)
+                .header("User-Agent", userAgent);
+    }
+
+    /**
+     * Executes a request synchronously.
+     * The response must be closed.
+     *
+     * @param request The request
+     * @return The response
+     */
+    public Response execute(@NonNull Request request) throws IOException {
+        return client.newCall(request).execute();
+    }
+
+    /**
+     * Creates a data source factory for the player (media, manifests and DRM).
+     *
+     * @param listener Transfer listener (e.g. bandwidth meter)
+     * @return The data source factory
+     */
+    public HttpDataSource.Factory buildDataSourceFactory(@Nullable TransferListener listener) {
+        return new OkHttpDataSourceFactory(client, userAgent, listener);
+    }
+
+    /**
+     * DNS resolver caching addresses for a given time.
+     */
+    private static final class CachingDns implements Dns {
+
+        private final Dns upstream;
+        private final long ttl;
+        private final Map<String, CachedLookup> lookups = new HashMap<>();
+
+        CachingDns(@NonNull Dns upstream, long ttl) {
+            this.upstream = upstream;
+            this.ttl = ttl;
+        }
+
+        @Override
+        public List<InetAddress> lookup(@NonNull String hostname) throws UnknownHostException {
+            long now = SystemClock.elapsedRealtime();
+
+            synchronized (lookups) {
+                CachedLookup cached = lookups.get(hostname);
+
+                if (cached != null && now - cached.resolvedAt < ttl)
+                    return cached.addresses;
+            }
+
+            List<InetAddress> addresses = upstream.lookup(hostname);
+
+            synchronized (lookups) {
+                lookups.put(hostname, new CachedLookup(addresses, now));
+            }
+
+            return addresses;
+        }
+    }
+
+    private static final class CachedLookup {
+        final List<InetAddress> addresses;
+        final long resolvedAt;
+
+        CachedLookup(List<InetAddress> addresses, long resolvedAt) {
+            this.addresses = addresses;
+            this.resolvedAt = resolvedAt;
+        }
+    }
+}
@@ -19,27 +19,32 @@ import com.google.android.exoplayer2.source.dash.manifest.DashManifest;
 import com.google.android.exoplayer2.source.dash.offline.DashDownloadHelper;
 import com.google.android.exoplayer2.source.hls.offline.HlsDownloadHelper;
 import com.google.android.exoplayer2.upstream.DataSource;
-import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
 import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.Util;
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.sambatech.player.model.SambaMedia;
 import com.sambatech.player.model.SambaMediaConfig;
+import com.sambatech.player.network.SambaTransport;
 import com.sambatech.player.offline.listeners.LicenceDrmCallback;
 import com.sambatech.player.offline.model.DownloadData;
 import com.sambatech.player.offline.model.DownloadState;
 import com.sambatech.player.offline.model.SambaDownloadRequest;
 import com.sambatech.player.offline.model.SambaSubtitle;
 import com.sambatech.player.offline.model.SambaTrack;
-import com.sambatech.player.utils.SharedPrefsUtils;
 
-import java.lang.reflect.Type;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 class OfflineUtils {
 
-    private static final String MEDIAS_PERSISTED_KEY = "MEDIAS_PERSISTED_KEY";
+    private static final byte DOWNLOAD_DATA_MARKER = 0;
+    private static final byte DOWNLOAD_DATA_VERSION = 1;
 
     private OfflineUtils() {
         throw new IllegalArgumentException("Static class");
@@ -68,7 +73,7 @@ class OfflineUtils {
                     String licenseUrl = sambaMediaConfig.drmRequest.getLicenseUrl();
 
 
-                    DefaultHttpDataSourceFactory httpDataSourceFactory = new DefaultHttpDataSourceFactory(SambaDownloadManager.getInstance().getUserAgent());
+                    HttpDataSource.Factory httpDataSourceFactory = SambaTransport.getInstance().buildDataSourceFactory(null);
                     OfflineLicenseHelper<FrameworkMediaCrypto> offlineLicenseHelper = OfflineLicenseHelper.newWidevineInstance(licenseUrl, httpDataSourceFactory);
 
                     DataSource dataSource = httpDataSourceFactory.createDataSource();
@@ -104,34 +109,6 @@ class OfflineUtils {
     }
 
 
-    static void persistSambaMedias(List<SambaMediaConfig> sambaMediaConfigList) {
-
-        Type listType = new TypeToken<List<SambaMediaConfig>>() {}.getType();
-        Gson gson = new Gson();
-        String json = gson.toJson(sambaMediaConfigList, listType);
-        SharedPrefsUtils.setStringPreference(
-                SambaDownloadManager.getInstance().getAppInstance().getApplicationContext(),
-                MEDIAS_PERSISTED_KEY,
-                json
-        );
-    }
-
-    static List<SambaMediaConfig>  getPersistedSambaMedias() {
-        String json = SharedPrefsUtils.getStringPreference(
-                SambaDownloadManager.getInstance().getAppInstance().getApplicationContext(),
-                MEDIAS_PERSISTED_KEY
-        );
-
-        if (json == null || json.isEmpty()) {
-            return new ArrayList<>();
-        } else {
-            Type listType = new TypeToken<List<SambaMediaConfig>>() {}.getType();
-            Gson gson = new Gson();
-            return gson.fromJson(json, listType);
-        }
-
-    }
-
     static int inferPrimaryTrackType(Format format) {
         int trackType = MimeTypes.getTrackType(format.sampleMimeType);
         if (trackType != C.TRACK_TYPE_UNKNOWN) {
@@ -156,19 +133,139 @@ class OfflineUtils {
         return (double) (((bitrate / 1000000f) * duration) / 8);
     }
 
-    static byte[] buildDownloadData(String mediaId, String mediaTitle, Double totalDownload, SambaMediaConfig sambaMedia, SambaSubtitle sambaSubtitle) {
+    /**
+     * Builds the payload of a download action: a reference to the media and its subtitle.
+     * The media config itself is kept once in {@link SambaMediaStore}.
+     */
+    static byte[] buildDownloadData(SambaMediaConfig sambaMedia, SambaSubtitle sambaSubtitle) {
 
-        DownloadData downloadData = new DownloadData(mediaId, mediaTitle, totalDownload, sambaMedia);
-        downloadData.setSambaSubtitle(sambaSubtitle);
+        int captionIndex = -1;
 
-        String json = new Gson().toJson(downloadData, DownloadData.class);
+        if (sambaSubtitle != null && sambaMedia.captions != null) {
+            for (int i = 0; i < sambaMedia.captions.size() && captionIndex == -1; i++) {
+                if (sambaSubtitle.getCaption().url.equals(sambaMedia.captions.get(i).url)) {
+                    captionIndex = i;
+                }
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream output = new DataOutputStream(bytes);
 
-        return Util.getUtf8Bytes(json);
+        try {
+            output.writeByte(DOWNLOAD_DATA_MARKER);
+            output.writeByte(DOWNLOAD_DATA_VERSION);
+            output.writeUTF(sambaMedia.id);
+            output.writeInt(captionIndex);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return bytes.toByteArray();
     }
 
     static DownloadData getDownloadDataFromBytes(byte[] data) {
-        String json = Util.fromUtf8Bytes(data);
-        return new Gson().fromJson(json, DownloadData.class);
+        return getDownloadDataFromBytes(data, SambaDownloadManager.getInstance().getMediaStore());
+    }
+
+    /**
+     * Reads the payload of a download action.
+     * Each call gets its own copy of the media config (download states are handed to listeners and changed).
+     */
+    static DownloadData getDownloadDataFromBytes(byte[] data, SambaMediaStore mediaStore) {
+
+        // actions created before the binary payload carry the whole data as JSON
+        if (data.length < 2 || data[0] != DOWNLOAD_DATA_MARKER) {
+            return getLegacyDownloadData(data);
+        }
+
+        String mediaId;
+        int captionIndex;
+
+        try {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+            input.skipBytes(2);
+            mediaId = input.readUTF();
+            captionIndex = input.readInt();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid download data", e);
+        }
+
+        DownloadData storedData = mediaStore.getDownloadData(mediaId);
+        DownloadData downloadData;
+
+        if (storedData != null) {
+            // the size is the media's, not the caption's
+            downloadData = new DownloadData(mediaId, storedData.getMediaTitle(), captionIndex < 0 ? storedData.getTotalDownloadSizeInMB() : null, copyMedia(storedData.getSambaMedia()));
+        } else {
+            // download finished: the media config is kept with the downloaded medias
+            SambaMediaConfig sambaMedia = mediaStore.get(mediaId);
+            downloadData = new DownloadData(mediaId, sambaMedia != null ? sambaMedia.title : null, null, copyMedia(sambaMedia));
+        }
+
+        SambaMediaConfig sambaMedia = downloadData.getSambaMedia();
+
+        if (captionIndex >= 0 && sambaMedia != null && sambaMedia.captions != null && captionIndex < sambaMedia.captions.size()) {
+            SambaMedia.Caption caption = sambaMedia.captions.get(captionIndex);
+            downloadData.setSambaSubtitle(new SambaSubtitle(caption.label, caption));
+        }
+
+        return downloadData;
+    }
+
+    /**
+     * Reads only the media ID of a download action payload.
+     */
+    static String getMediaIdFromBytes(byte[] data) {
+
+        if (data.length < 2 || data[0] != DOWNLOAD_DATA_MARKER) {
+            return getLegacyDownloadData(data).getMediaId();
+        }
+
+        try {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+            input.skipBytes(2);
+            return input.readUTF();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid download data", e);
+        }
+    }
+
+    /**
+     * Keeps the data of an action created before the binary payload in the media store,
+     * so actions referencing the media (e.g. its removal) can still find it.
+     * Only for queued or running actions: the data is removed once the media has no action left.
+     */
+    static void importLegacyDownloadData(byte[] data, SambaMediaStore mediaStore) {
+
+        if (data.length >= 2 && data[0] == DOWNLOAD_DATA_MARKER) {
+            return;
+        }
+
+        DownloadData downloadData = getLegacyDownloadData(data);
+
+        if (downloadData.getSambaMedia() != null && mediaStore.getDownloadData(downloadData.getMediaId()) == null) {
+            mediaStore.putDownloadData(new DownloadData(downloadData.getMediaId(), downloadData.getMediaTitle(), downloadData.getTotalDownloadSizeInMB(), downloadData.getSambaMedia()));
+        }
+    }
+
+    private static DownloadData getLegacyDownloadData(byte[] data) {
+        return new Gson().fromJson(Util.fromUtf8Bytes(data), DownloadData.class);
+    }
+
+    private static SambaMediaConfig copyMedia(SambaMediaConfig media) {
+
+        if (media == null) {
+            return null;
+        }
+
+        SambaMediaConfig copy = new SambaMediaConfig(media);
+
+        // not carried by the copy constructor
+        copy.blockIfRooted = media.blockIfRooted;
+        copy.defaultOutputIndex = media.defaultOutputIndex;
+
+        return copy;
     }
 
     static Double buildDownloadSize(List<SambaTrack> finalTracks) {
@@ -213,9 +310,7 @@ class OfflineUtils {
 
     }
 
-    static DownloadState buildDownloadState(DownloadManager.TaskState taskState, DownloadState.State optionalState) {
-
-        DownloadData downloadData = getDownloadDataFromBytes(taskState.action.data);
+    static DownloadState buildDownloadState(DownloadManager.TaskState taskState, DownloadData downloadData, DownloadState.State optionalState) {
 
         DownloadState.State state;
 
@@ -262,7 +357,7 @@ class OfflineUtils {
 
         for (SambaSubtitle subtitle : subtitles) {
             if (subtitle.getCaption().url != null && !subtitle.getCaption().url.isEmpty() && subtitle.getCaption().label != null) {
-                byte[] downloadData = OfflineUtils.buildDownloadData(sambaMediaConfig.id, sambaMediaConfig.title, 0D, (SambaMediaConfig) sambaMediaConfig, subtitle);
+                byte[] downloadData = OfflineUtils.buildDownloadData(sambaMediaConfig, subtitle);
                 DownloadAction downloadAction = OfflineUtils.getDownloadHelper(Uri.parse(subtitle.getCaption().url), "progressive", dataSourceFactory).getDownloadAction(downloadData, new ArrayList<>());
                 downloadActions.add(downloadAction);
             }
@@ -13,15 +13,16 @@ import com.google.android.exoplayer2.offline.DownloaderConstructorHelper;
 import com.google.android.exoplayer2.offline.StreamKey;
 import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
-import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
+import com.google.android.exoplayer2.upstream.DummyDataSource;
 import com.google.android.exoplayer2.upstream.HttpDataSource;
 import com.google.android.exoplayer2.upstream.cache.Cache;
 import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
 import com.google.android.exoplayer2.upstream.cache.CacheDataSourceFactory;
 import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
 import com.google.android.exoplayer2.upstream.cache.SimpleCache;
-import com.google.android.exoplayer2.util.Util;
+import com.sambatech.player.captions.CaptionStore;
 import com.sambatech.player.model.SambaMedia;
+import com.sambatech.player.network.SambaTransport;
 import com.sambatech.player.offline.listeners.SambaDownloadListener;
 import com.sambatech.player.offline.listeners.SambaDownloadRequestListener;
 import com.sambatech.player.offline.model.SambaDownloadRequest;
@@ -34,6 +35,7 @@ public class SambaDownloadManager {
     private static final String DOWNLOAD_ACTION_FILE = "actions";
     private static final String DOWNLOAD_TRACKER_ACTION_FILE = "tracked_actions";
     private static final String DOWNLOAD_CONTENT_DIRECTORY = "downloads";
+    private static final String DOWNLOAD_CAPTIONS_DIRECTORY = "captions";
 
     private static final String SAMBA_PREF = "samba_pref";
 
@@ -41,6 +43,8 @@ public class SambaDownloadManager {
 
     private File downloadDirectory;
     private Cache downloadCache;
+    private CaptionStore captionStore;
+    private SambaMediaStore mediaStore;
     private DownloadManager downloadManager;
     private SambaDownloadTracker sambaDownloadTracker;
     private Application applicationInstance;
@@ -71,7 +75,7 @@ public class SambaDownloadManager {
             isConfigured = true;
         }
 
-        userAgent = Util.getUserAgent(applicationInstance.getApplicationContext(), "SambaPlayer");
+        userAgent = SambaTransport.getInstance().getUserAgent();
     }
 
     public void addDownloadListener(SambaDownloadListener listener) {
@@ -135,6 +139,17 @@ public class SambaDownloadManager {
         getSambaDownloadTracker().stopAllDownloads();
     }
 
+    /**
+     * Sets how often the progress of running downloads is reported to the download listeners.
+     * Each media is only reported when its progress changed.
+     *
+     * @param intervalMs Time between reports (ms), 1000 by default and at least 100
+     */
+    public void setProgressUpdateInterval(long intervalMs) {
+        checkConfig();
+        getSambaDownloadTracker().setProgressUpdateInterval(intervalMs);
+    }
+
     public Application getAppInstance() {
         checkConfig();
         return applicationInstance;
@@ -150,8 +165,35 @@ public class SambaDownloadManager {
     }
 
 
+    /**
+     * Source reading downloaded content only (missing data fails instead of hitting the network).
+     */
+    public DataSource.Factory buildCacheOnlyDataSourceFactory() {
+        checkConfig();
+        return new CacheDataSourceFactory(getDownloadCache(), DummyDataSource.FACTORY);
+    }
+
+    /**
+     * Parsed captions of the downloaded medias.
+     */
+    public synchronized CaptionStore getCaptionStore() {
+        checkConfig();
+        if (captionStore == null) {
+            captionStore = new CaptionStore(new File(getDownloadDirectory(), DOWNLOAD_CAPTIONS_DIRECTORY));
+        }
+        return captionStore;
+    }
+
+
+    synchronized SambaMediaStore getMediaStore() {
+        if (mediaStore == null) {
+            mediaStore = new SambaMediaStore(applicationInstance.getApplicationContext());
+        }
+        return mediaStore;
+    }
+
     HttpDataSource.Factory buildHttpDataSourceFactory() {
-        return new DefaultHttpDataSourceFactory(userAgent);
+        return SambaTransport.getInstance().buildDataSourceFactory(null);
     }
 
 
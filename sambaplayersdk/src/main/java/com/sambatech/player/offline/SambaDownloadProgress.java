@@ -0,0 +1,105 @@
+package com.sambatech.player.offline;
+
+import com.google.android.exoplayer2.offline.DownloadManager;
+import com.google.android.exoplayer2.offline.DownloadManager.TaskState;
+import com.sambatech.player.offline.model.DownloadState;
+import com.sambatech.player.utils.SambaScheduler;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Samples the progress of all running downloads on a fixed interval and reports each media
+ * only when its progress changed, however many downloads are running or however often
+ * the notification is refreshed.
+ */
+final class SambaDownloadProgress {
+
+    static final long DEFAULT_INTERVAL = 1000;
+    // shorter intervals would keep the main thread busy sampling
+    static final long MIN_INTERVAL = 100;
+
+    // smallest reported change (percentage points, as shown in the notification)
+    private static final float MIN_DELTA = 0.1f;
+
+    interface Listener {
+        void onProgress(DownloadState downloadState);
+    }
+
+    private final Listener listener;
+    // mediaId -> last reported percentage
+    private final HashMap<String, Float> reported = new HashMap<>();
+    // mediaId -> its largest running task (reused on every sample)
+    private final HashMap<String, TaskState> sampled = new HashMap<>();
+    private final Runnable sampler = this::sample;
+    private long interval = DEFAULT_INTERVAL;
+    private boolean running;
+
+    SambaDownloadProgress(Listener listener) {
+        this.listener = listener;
+    }
+
+    void start() {
+        if (!running) {
+            running = true;
+            SambaScheduler.getInstance().schedule(sampler, interval, interval);
+        }
+    }
+
+    void stop() {
+        if (running) {
+            running = false;
+            SambaScheduler.getInstance().cancel(sampler);
+            reported.clear();
+        }
+    }
+
+    /**
+     * @param interval Time between samples (ms), raised to {@link #MIN_INTERVAL}
+     */
+    void setInterval(long interval) {
+        this.interval = Math.max(interval, MIN_INTERVAL);
+
+        if (running) {
+            SambaScheduler.getInstance().schedule(sampler, this.interval, this.interval);
+        }
+    }
+
+    private void sample() {
+        DownloadManager downloadManager = SambaDownloadManager.getInstance().getDownloadManager();
+
+        for (TaskState taskState : downloadManager.getAllTaskStates()) {
+            if (taskState.state != TaskState.STATE_STARTED || taskState.action.isRemoveAction) {
+                continue;
+            }
+
+            // the media download outweighs its captions
+            String mediaId = OfflineUtils.getMediaIdFromBytes(taskState.action.data);
+            TaskState current = sampled.get(mediaId);
+
+            if (current == null || taskState.downloadedBytes > current.downloadedBytes) {
+                sampled.put(mediaId, taskState);
+            }
+        }
+
+        for (Iterator<String> iterator = reported.keySet().iterator(); iterator.hasNext(); ) {
+            if (!sampled.containsKey(iterator.next())) {
+                iterator.remove();
+            }
+        }
+
+        for (Map.Entry<String, TaskState> entry : sampled.entrySet()) {
+            String mediaId = entry.getKey();
+            TaskState taskState = entry.getValue();
+            Float last = reported.get(mediaId);
+
+            if (last == null || Math.abs(taskState.downloadPercentage - last) >= MIN_DELTA) {
+                reported.put(mediaId, taskState.downloadPercentage);
+                listener.onProgress(OfflineUtils.buildDownloadState(taskState, OfflineUtils.getDownloadDataFromBytes(taskState.action.data), null));
+            }
+        }
+
+        sampled.clear();
+    }
+}
@@ -30,9 +30,6 @@ import com.google.android.exoplayer2.util.Util;
 import com.google.gson.Gson;
 import com.sambatech.player.R;
 import com.sambatech.player.offline.model.DownloadData;
-import com.sambatech.player.offline.model.ProgressMessageEvent;
-
-import org.greenrobot.eventbus.EventBus;
 
 /**
  * A service for downloading media.
@@ -65,9 +62,14 @@ public class SambaDownloadService extends DownloadService {
     @Override
     protected Notification getForegroundNotification(TaskState[] taskStates) {
 
-        if (taskStates[0].state == TaskState.STATE_STARTED) {
-            ProgressMessageEvent progressMessageEvent = new ProgressMessageEvent(taskStates[0]);
-            EventBus.getDefault().post(progressMessageEvent);
+        // progress listeners are fed by SambaDownloadProgress, this only builds the notification
+        TaskState messageTaskState = taskStates[0];
+
+        for (TaskState taskState : taskStates) {
+            if (taskState.state == TaskState.STATE_STARTED) {
+                messageTaskState = taskState;
+                break;
+            }
         }
 
         PendingIntent pedingintent;
@@ -82,7 +84,7 @@ public class SambaDownloadService extends DownloadService {
                 R.drawable.exo_controls_play,
                 CHANNEL_ID,
                 /* contentIntent= */ pedingintent,
-                /* message= */ OfflineUtils.buildNotificationProgressMessage(taskStates[0]),
+                /* message= */ OfflineUtils.buildNotificationProgressMessage(messageTaskState),
                 taskStates);
     }
 
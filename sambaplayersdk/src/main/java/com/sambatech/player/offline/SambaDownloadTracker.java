@@ -22,6 +22,7 @@ import android.os.HandlerThread;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Base64;
+import android.util.SparseArray;
 import android.widget.Toast;
 
 import com.google.android.exoplayer2.offline.ActionFile;
@@ -43,16 +44,11 @@ import com.sambatech.player.offline.listeners.SambaDownloadListener;
 import com.sambatech.player.offline.listeners.SambaDownloadRequestListener;
 import com.sambatech.player.offline.model.DownloadData;
 import com.sambatech.player.offline.model.DownloadState;
-import com.sambatech.player.offline.model.ProgressMessageEvent;
 import com.sambatech.player.offline.model.SambaDownloadRequest;
 import com.sambatech.player.offline.model.SambaSubtitle;
 import com.sambatech.player.offline.model.SambaTrack;
 
 import org.apache.commons.collections4.CollectionUtils;
-import org.apache.commons.collections4.Transformer;
-import org.greenrobot.eventbus.EventBus;
-import org.greenrobot.eventbus.Subscribe;
-import org.greenrobot.eventbus.ThreadMode;
 
 import java.io.File;
 import java.io.IOException;
@@ -78,7 +74,14 @@ public class SambaDownloadTracker implements DownloadManager.Listener {
     private final DataSource.Factory dataSourceFactory;
     private final CopyOnWriteArraySet<SambaDownloadListener> listeners;
     private final HashMap<Uri, DownloadAction> trackedDownloadStates;
-    private List<SambaMediaConfig> sambaMedias;
+    // mediaId -> URI of its tracked media download
+    private final HashMap<String, Uri> trackedMediaUris;
+    // taskId -> queued or running task
+    private final SparseArray<ActiveTask> activeTasks;
+    // mediaId -> its queued or running tasks
+    private final HashMap<String, SparseArray<ActiveTask>> activeTasksByMedia;
+    private final SambaMediaStore mediaStore;
+    private final SambaDownloadProgress progress;
     private final ActionFile actionFile;
     private final Handler actionFileWriteHandler;
 
@@ -92,14 +95,17 @@ public class SambaDownloadTracker implements DownloadManager.Listener {
         this.actionFile = new ActionFile(actionFile);
         listeners = new CopyOnWriteArraySet<>();
         trackedDownloadStates = new HashMap<>();
-        sambaMedias = OfflineUtils.getPersistedSambaMedias();
+        trackedMediaUris = new HashMap<>();
+        activeTasks = new SparseArray<>();
+        activeTasksByMedia = new HashMap<>();
+        mediaStore = SambaDownloadManager.getInstance().getMediaStore();
         HandlerThread actionFileWriteThread = new HandlerThread("SambaDownloadTracker");
         actionFileWriteThread.start();
         actionFileWriteHandler = new Handler(actionFileWriteThread.getLooper());
 
         loadTrackedActions(deserializers.length > 0 ? deserializers : DownloadAction.getDefaultDeserializers());
 
-        EventBus.getDefault().register(this);
+        progress = new SambaDownloadProgress(this::notifyListeners);
     }
 
     void addListener(SambaDownloadListener listener) {
@@ -111,108 +117,61 @@ public class SambaDownloadTracker implements DownloadManager.Listener {
     }
 
     boolean isDownloaded(@NonNull String mediaId) {
-
-        SambaMediaConfig sambaMediaConfig = CollectionUtils.find(sambaMedias, media -> media.id.equals(mediaId));
-
-        if (sambaMediaConfig != null) {
-            Uri uri = Uri.parse(sambaMediaConfig.downloadUrl);
-            return trackedDownloadStates.containsKey(uri);
-        } else {
-            return false;
-        }
+        return mediaStore.contains(mediaId) && trackedMediaUris.containsKey(mediaId);
     }
 
     boolean isDownloading(@NonNull String mediaId) {
-        if (SambaDownloadManager.getInstance().getDownloadManager().getTaskCount() > 0) {
-            TaskState[] taskStates = SambaDownloadManager.getInstance().getDownloadManager().getAllTaskStates();
-
-            for (TaskState taskState : taskStates) {
-
-                DownloadData downloadData = OfflineUtils.getDownloadDataFromBytes(taskState.action.data);
-
-                if (downloadData.getMediaId().equals(mediaId)) {
-                    return true;
-                }
-            }
-
-        }
-        return false;
+        return activeTasksByMedia.containsKey(mediaId);
     }
 
     void cancelAllDownloads() {
-        if (SambaDownloadManager.getInstance().getDownloadManager().getTaskCount() > 0) {
-            TaskState[] taskStates = SambaDownloadManager.getInstance().getDownloadManager().getAllTaskStates();
-
-            for (TaskState taskState : taskStates) {
-                DownloadData downloadData = OfflineUtils.getDownloadDataFromBytes(taskState.action.data);
-                Uri uri = taskState.action.uri;
+        List<ActiveTask> tasks = new ArrayList<>(activeTasks.size());
 
-                DownloadAction removeAction;
-
-                if (downloadData.getSambaSubtitle() != null) {
-                    removeAction = OfflineUtils.getDownloadHelper(uri, "progressive", dataSourceFactory).getRemoveAction(taskState.action.data);
-                } else {
-                    String extension = downloadData.getSambaMedia().type;
-                    removeAction = OfflineUtils.getDownloadHelper(uri, extension, dataSourceFactory).getRemoveAction(taskState.action.data);
-                }
-
-                startServiceWithAction(removeAction);
-            }
+        for (int i = 0; i < activeTasks.size(); i++) {
+            tasks.add(activeTasks.valueAt(i));
+        }
 
+        for (ActiveTask task : tasks) {
+            cancelTask(task);
         }
     }
 
     void cancelDownload(String mediaId) {
+        SparseArray<ActiveTask> mediaTasks = activeTasksByMedia.get(mediaId);
 
-        if (SambaDownloadManager.getInstance().getDownloadManager().getTaskCount() > 0) {
-            TaskState[] taskStates = SambaDownloadManager.getInstance().getDownloadManager().getAllTaskStates();
-
-            for (TaskState taskState : taskStates) {
-                DownloadData downloadData = OfflineUtils.getDownloadDataFromBytes(taskState.action.data);
-                if (downloadData.getMediaId().equals(mediaId)) {
-                    Uri uri = taskState.action.uri;
+        if (mediaTasks != null) {
+            mediaTasks = mediaTasks.clone();
 
-                    DownloadAction removeAction;
-
-                    if (downloadData.getSambaSubtitle() != null) {
-                        removeAction = OfflineUtils.getDownloadHelper(uri, "progressive", dataSourceFactory).getRemoveAction(taskState.action.data);
-                    } else {
-                        String extension = downloadData.getSambaMedia().type;
-                        removeAction = OfflineUtils.getDownloadHelper(uri, extension, dataSourceFactory).getRemoveAction(taskState.action.data);
-                    }
-
-                    startServiceWithAction(removeAction);
-                }
+            for (int i = 0; i < mediaTasks.size(); i++) {
+                cancelTask(mediaTasks.valueAt(i));
             }
-
         }
     }
 
     void deleteDownload(String mediaId) {
 
-        if (sambaMedias != null && !sambaMedias.isEmpty()) {
-
-            SambaMediaConfig sambaMediaConfig = CollectionUtils.find(sambaMedias, item -> item.id.equals(mediaId));
-
-            if (sambaMediaConfig != null) {
-                byte[] downloadData = OfflineUtils.buildDownloadData(sambaMediaConfig.id, sambaMediaConfig.title, 0D, sambaMediaConfig, null);
-                Uri uri = Uri.parse(sambaMediaConfig.downloadUrl);
-                String extension = sambaMediaConfig.type;
-                DownloadAction removeAction = OfflineUtils.getDownloadHelper(uri, extension, dataSourceFactory).getRemoveAction(downloadData);
-                startServiceWithAction(removeAction);
+        SambaMediaConfig sambaMediaConfig = mediaStore.get(mediaId);
 
+        if (sambaMediaConfig != null) {
+            // referenced by the remove actions until they finish (the media record goes first)
+            mediaStore.putDownloadData(new DownloadData(sambaMediaConfig.id, sambaMediaConfig.title, null, sambaMediaConfig));
 
-                if (sambaMediaConfig.captions != null && !sambaMediaConfig.captions.isEmpty()) {
-                    for (SambaMedia.Caption caption : sambaMediaConfig.captions) {
-                        if (caption.url != null && !caption.url.isEmpty() && caption.label != null) {
-                            byte[] subtitleDownloadData = OfflineUtils.buildDownloadData(sambaMediaConfig.id, sambaMediaConfig.title, 0D, sambaMediaConfig, new SambaSubtitle(caption.label, caption));
-                            Uri uriSub = Uri.parse(caption.url);
-                            DownloadAction subtitleRemoveAction = OfflineUtils.getDownloadHelper(uriSub, "progressive", dataSourceFactory).getRemoveAction(subtitleDownloadData);
-                            startServiceWithAction(subtitleRemoveAction);
-                        }
+            byte[] downloadData = OfflineUtils.buildDownloadData(sambaMediaConfig, null);
+            Uri uri = Uri.parse(sambaMediaConfig.downloadUrl);
+            String extension = sambaMediaConfig.type;
+            DownloadAction removeAction = OfflineUtils.getDownloadHelper(uri, extension, dataSourceFactory).getRemoveAction(downloadData);
+            startServiceWithAction(removeAction);
+
+
+            if (sambaMediaConfig.captions != null && !sambaMediaConfig.captions.isEmpty()) {
+                for (SambaMedia.Caption caption : sambaMediaConfig.captions) {
+                    if (caption.url != null && !caption.url.isEmpty() && caption.label != null) {
+                        byte[] subtitleDownloadData = OfflineUtils.buildDownloadData(sambaMediaConfig, new SambaSubtitle(caption.label, caption));
+                        Uri uriSub = Uri.parse(caption.url);
+                        DownloadAction subtitleRemoveAction = OfflineUtils.getDownloadHelper(uriSub, "progressive", dataSourceFactory).getRemoveAction(subtitleDownloadData);
+                        startServiceWithAction(subtitleRemoveAction);
                     }
                 }
-
             }
 
         }
@@ -220,10 +179,8 @@ public class SambaDownloadTracker implements DownloadManager.Listener {
 
 
     void deleteAllDownloads() {
-        if (sambaMedias != null && !sambaMedias.isEmpty()) {
-            for (SambaMediaConfig sambaMedia : sambaMedias) {
-                deleteDownload(sambaMedia.id);
-            }
+        for (String mediaId : mediaStore.getIds()) {
+            deleteDownload(mediaId);
         }
     }
 
@@ -307,7 +264,14 @@ public class SambaDownloadTracker implements DownloadManager.Listener {
 
     @Override
     public void onInitialized(DownloadManager downloadManager) {
-        // Do nothing.
+        // Tasks restored from the action file which won't change state until started.
+        for (TaskState taskState : downloadManager.getAllTaskStates()) {
+            if (taskState.state == TaskState.STATE_QUEUED || taskState.state == TaskState.STATE_STARTED) {
+                OfflineUtils.importLegacyDownloadData(taskState.action.data, mediaStore);
+            }
+
+            updateActiveTasks(taskState, OfflineUtils.getMediaIdFromBytes(taskState.action.data));
+        }
     }
 
     @Override
@@ -315,6 +279,11 @@ public class SambaDownloadTracker implements DownloadManager.Listener {
         DownloadAction action = taskState.action;
         Uri uri = action.uri;
 
+        DownloadData downloadData = OfflineUtils.getDownloadDataFromBytes(action.data);
+        String mediaId = downloadData.getMediaId();
+
+        updateActiveTasks(taskState, mediaId);
+
         DownloadState.State state = null;
 
         if ((action.isRemoveAction && taskState.state == TaskState.STATE_COMPLETED)
@@ -323,56 +292,45 @@ public class SambaDownloadTracker implements DownloadManager.Listener {
             if (trackedDownloadStates.remove(uri) != null) {
                 handleTrackedDownloadStatesChanged();
 
-                DownloadData downloadData = OfflineUtils.getDownloadDataFromBytes(action.data);
-                SambaMediaConfig sambaMediaConfig = CollectionUtils.find(sambaMedias, item -> item.id.equals(downloadData.getMediaId()));
-                if (sambaMediaConfig != null && sambaMedias.remove(sambaMediaConfig)) {
-                    OfflineUtils.persistSambaMedias(sambaMedias);
+                mediaStore.remove(mediaId);
+
+                if (uri.equals(trackedMediaUris.get(mediaId))) {
+                    trackedMediaUris.remove(mediaId);
                 }
 
             }
 
+            if (action.isRemoveAction && downloadData.getSambaSubtitle() != null) {
+                SambaDownloadManager.getInstance().getCaptionStore().remove(uri.toString());
+            }
+
             if (!action.isRemoveAction) {
                 state = DownloadState.State.FAILED;
             } else {
                 state = DownloadState.State.DELETED;
             }
 
-        } else if (taskState.state == TaskState.STATE_COMPLETED) {
-            DownloadData downloadData = OfflineUtils.getDownloadDataFromBytes(taskState.action.data);
+        } else if (taskState.state == TaskState.STATE_COMPLETED && downloadData.getSambaMedia() != null) {
             SambaMediaConfig sambaMediaConfig = downloadData.getSambaMedia();
             sambaMediaConfig.isOffline = true;
 
             sambaMediaConfig.isSubtitlesOffline = downloadData.getSambaSubtitle() != null;
 
-            SambaMediaConfig oldSambaMedia = CollectionUtils.find(sambaMedias, item -> item.id.equals(sambaMediaConfig.id));
-
-            if (oldSambaMedia != null) {
-                int position = sambaMedias.indexOf(oldSambaMedia);
-                sambaMedias.set(position, sambaMediaConfig);
-            } else {
-                sambaMedias.add(sambaMediaConfig);
+            if (sambaMediaConfig.isSubtitlesOffline) {
+                buildCaptionIndex(uri);
             }
 
-            OfflineUtils.persistSambaMedias(sambaMedias);
-        }
-
-        DownloadState downloadState = OfflineUtils.buildDownloadState(taskState, state);
-        for (SambaDownloadListener listener : listeners) {
-            listener.onDownloadStateChanged(downloadState);
+            mediaStore.put(sambaMediaConfig);
         }
 
+        notifyListeners(OfflineUtils.buildDownloadState(taskState, downloadData, state));
 
-    }
-
-    @Subscribe(threadMode = ThreadMode.MAIN)
-    public void onProgressMessageReceived(ProgressMessageEvent progressMessageEvent) {
-
-        DownloadState downloadState = OfflineUtils.buildDownloadState(progressMessageEvent.getTaskState(), null);
-        for (SambaDownloadListener listener : listeners) {
-            listener.onDownloadStateChanged(downloadState);
+        // no action left referencing the download data (downloaded medias keep their own config)
+        if (!isDownloading(mediaId)) {
+            mediaStore.removeDownloadData(mediaId);
         }
-    }
 
+    }
 
     @Override
     public void onIdle(DownloadManager downloadManager) {
@@ -381,11 +339,18 @@ public class SambaDownloadTracker implements DownloadManager.Listener {
 
     // Internal methods
 
+    private void notifyListeners(DownloadState downloadState) {
+        for (SambaDownloadListener listener : listeners) {
+            listener.onDownloadStateChanged(downloadState);
+        }
+    }
+
     private void loadTrackedActions(DownloadAction.Deserializer[] deserializers) {
         try {
             DownloadAction[] allActions = actionFile.load(deserializers);
             for (DownloadAction action : allActions) {
                 trackedDownloadStates.put(action.uri, action);
+                trackedMediaUris.put(OfflineUtils.getMediaIdFromBytes(action.data), action.uri);
             }
         } catch (IOException e) {
             Log.e(TAG, "Failed to load tracked actions", e);
@@ -404,6 +369,58 @@ public class SambaDownloadTracker implements DownloadManager.Listener {
                 });
     }
 
+    /**
+     * Keeps the index of queued and running tasks up to date.
+     */
+    private void updateActiveTasks(TaskState taskState, String mediaId) {
+        ActiveTask task = activeTasks.get(taskState.taskId);
+        boolean active = taskState.state == TaskState.STATE_QUEUED || taskState.state == TaskState.STATE_STARTED;
+
+        if (active && task == null) {
+            task = new ActiveTask(mediaId, taskState.action);
+
+            SparseArray<ActiveTask> mediaTasks = activeTasksByMedia.get(task.mediaId);
+
+            if (mediaTasks == null) {
+                mediaTasks = new SparseArray<>();
+                activeTasksByMedia.put(task.mediaId, mediaTasks);
+            }
+
+            activeTasks.put(taskState.taskId, task);
+            mediaTasks.put(taskState.taskId, task);
+        } else if (!active && task != null) {
+            SparseArray<ActiveTask> mediaTasks = activeTasksByMedia.get(task.mediaId);
+
+            activeTasks.remove(taskState.taskId);
+            mediaTasks.remove(taskState.taskId);
+
+            if (mediaTasks.size() == 0) {
+                activeTasksByMedia.remove(task.mediaId);
+            }
+        }
+
+        if (activeTasks.size() > 0) {
+            progress.start();
+        } else {
+            progress.stop();
+        }
+    }
+
+    private void cancelTask(ActiveTask task) {
+        // the action type ("dash", "hls" or "progressive") names its helper
+        DownloadAction removeAction = OfflineUtils.getDownloadHelper(task.action.uri, task.action.type, dataSourceFactory).getRemoveAction(task.action.data);
+        startServiceWithAction(removeAction);
+    }
+
+    /**
+     * Parses a downloaded caption ahead of playback, so switching to it offline is instant.
+     */
+    private void buildCaptionIndex(Uri uri) {
+        final DataSource dataSource = SambaDownloadManager.getInstance().buildCacheOnlyDataSourceFactory().createDataSource();
+        actionFileWriteHandler.post(
+                () -> SambaDownloadManager.getInstance().getCaptionStore().build(uri.toString(), dataSource));
+    }
+
     private void startDownload(SambaDownloadRequest sambaDownloadRequest) {
 
         List<SambaTrack> finalTracks = OfflineUtils.buildFinalTracks(sambaDownloadRequest);
@@ -413,7 +430,7 @@ public class SambaDownloadTracker implements DownloadManager.Listener {
 
         SambaMediaConfig sambaMediaConfig = (SambaMediaConfig) sambaDownloadRequest.getSambaMedia();
 
-        byte[] downloadData = OfflineUtils.buildDownloadData(sambaMediaConfig.id, sambaMediaConfig.title, totalDownloadSize, (SambaMediaConfig) sambaDownloadRequest.getSambaMedia(), null);
+        byte[] downloadData = OfflineUtils.buildDownloadData(sambaMediaConfig, null);
 
         DownloadAction downloadAction = sambaDownloadRequest.getDownloadHelper().getDownloadAction(downloadData, trackKeys);
 
@@ -421,7 +438,11 @@ public class SambaDownloadTracker implements DownloadManager.Listener {
             return;
         }
 
+        // referenced by the media and caption actions
+        mediaStore.putDownloadData(new DownloadData(sambaMediaConfig.id, sambaMediaConfig.title, totalDownloadSize, sambaMediaConfig));
+
         trackedDownloadStates.put(downloadAction.uri, downloadAction);
+        trackedMediaUris.put(sambaMediaConfig.id, downloadAction.uri);
 
         handleTrackedDownloadStatesChanged();
         startServiceWithAction(downloadAction);
@@ -445,12 +466,6 @@ public class SambaDownloadTracker implements DownloadManager.Listener {
         DownloadService.startWithAction(context, SambaDownloadService.class, action, false);
     }
 
-    @Override
-    protected void finalize() throws Throwable {
-        super.finalize();
-        EventBus.getDefault().unregister(this);
-    }
-
     void startStoppedDownloads() {
 
         if (SambaDownloadManager.getInstance().getDownloadManager().getTaskCount() > 0) {
@@ -465,31 +480,35 @@ public class SambaDownloadTracker implements DownloadManager.Listener {
         SambaDownloadManager.getInstance().getDownloadManager().stopDownloads();
     }
 
+    void setProgressUpdateInterval(long interval) {
+        progress.setInterval(interval);
+    }
+
     @Nullable
     SambaMedia getDownloadedMedia(@NonNull String mediaId) {
-        if (sambaMedias != null && !sambaMedias.isEmpty()) {
-            return CollectionUtils.find(sambaMedias, item -> item.id.equals(mediaId));
-        }
-
-        return null;
+        return mediaStore.get(mediaId);
     }
 
     List<SambaMedia> getDownloadedMedias() {
-        return new ArrayList<>(CollectionUtils.collect(sambaMedias, (Transformer<SambaMediaConfig, SambaMedia>) input -> input));
+        return new ArrayList<>(mediaStore.getAll());
     }
 
     void updateDownloadedMedia(SambaMedia sambaMedia) {
-        if (sambaMedias != null && !sambaMedias.isEmpty()) {
+        SambaMediaConfig newSambaMediaConfig = (SambaMediaConfig) sambaMedia;
+
+        if (mediaStore.contains(newSambaMediaConfig.id)) {
+            mediaStore.put(newSambaMediaConfig);
+        }
+    }
 
-            SambaMediaConfig newSambaMediaConfig = (SambaMediaConfig) sambaMedia;
+    private static final class ActiveTask {
 
-            SambaMediaConfig oldSambaMediaConfig = CollectionUtils.find(sambaMedias, item -> item.id.equals(newSambaMediaConfig.id));
+        final String mediaId;
+        final DownloadAction action;
 
-            if (oldSambaMediaConfig != null) {
-                int position = sambaMedias.indexOf(oldSambaMediaConfig);
-                sambaMedias.set(position, newSambaMediaConfig);
-                OfflineUtils.persistSambaMedias(sambaMedias);
-            }
+        ActiveTask(String mediaId, DownloadAction action) {
+            this.mediaId = mediaId;
+            this.action = action;
         }
     }
 }
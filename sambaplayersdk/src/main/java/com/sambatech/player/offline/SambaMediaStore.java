@@ -0,0 +1,414 @@
+package com.sambatech.player.offline;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.exoplayer2.util.Log;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.sambatech.player.model.SambaMediaConfig;
+import com.sambatech.player.offline.model.DownloadData;
+import com.sambatech.player.utils.SharedPrefsUtils;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Downloaded medias, one row per media indexed by its ID.
+ *
+ * <p>The database is opened (created or upgraded, importing the previous JSON list) on a background thread,
+ * where only the IDs are read; a media is read from disk the first time it is requested.
+ * Calls wait for the IDs if still loading.
+ * Changes apply in memory right away and are written one media at a time on the same background thread.
+ *
+ * <p>Also keeps the {@link DownloadData} of medias being downloaded, referenced by their download actions.
+ */
+class SambaMediaStore extends SQLiteOpenHelper {
+
+    private static final String TAG = "SambaMediaStore";
+
+    private static final String DATABASE_NAME = "samba_medias.db";
+    private static final int DATABASE_VERSION = 2;
+
+    private static final String TABLE = "medias";
+    private static final String TABLE_DOWNLOADS = "downloads";
+    private static final String COLUMN_ID = "media_id";
+    private static final String COLUMN_DATA = "data";
+
+    // where medias were kept as a single JSON list before this store
+    private static final String LEGACY_MEDIAS_KEY = "MEDIAS_PERSISTED_KEY";
+
+    private final Context context;
+    private final Gson gson = new Gson();
+    // download order
+    private final Set<String> ids = new LinkedHashSet<>();
+    // medias already read or changed
+    private final Map<String, SambaMediaConfig> medias = new HashMap<>();
+    // download data already read or changed (null if not stored)
+    private final Map<String, DownloadData> downloads = new HashMap<>();
+    private final Handler writeHandler;
+    // counted down once the IDs are read (written only before)
+    private final CountDownLatch loaded = new CountDownLatch(1);
+    private boolean allLoaded;
+    private boolean legacyImported;
+
+    SambaMediaStore(Context context) {
+        this(context, startWriteThread());
+    }
+
+    /**
+     * @param writeLooper Where the database is opened and written
+     */
+    SambaMediaStore(Context context, Looper writeLooper) {
+        super(context.getApplicationContext(), DATABASE_NAME, null, DATABASE_VERSION);
+        this.context = context.getApplicationContext();
+        writeHandler = new Handler(writeLooper);
+
+        // first task of the thread, before any write
+        writeHandler.post(() -> {
+            loadIds();
+            loaded.countDown();
+
+            // only once the import is committed
+            if (legacyImported) {
+                SharedPrefsUtils.clearPreferenceByKey(this.context, LEGACY_MEDIAS_KEY);
+            }
+        });
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+                + COLUMN_ID + " TEXT PRIMARY KEY NOT NULL, "
+                + COLUMN_DATA + " TEXT NOT NULL)");
+
+        createDownloadsTable(db);
+        importLegacyMedias(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            createDownloadsTable(db);
+        }
+    }
+
+    boolean contains(@NonNull String mediaId) {
+        awaitLoaded();
+
+        synchronized (this) {
+            return ids.contains(mediaId);
+        }
+    }
+
+    List<String> getIds() {
+        awaitLoaded();
+
+        synchronized (this) {
+            return new ArrayList<>(ids);
+        }
+    }
+
+    @Nullable
+    SambaMediaConfig get(@NonNull String mediaId) {
+        awaitLoaded();
+
+        synchronized (this) {
+            if (!ids.contains(mediaId)) {
+                return null;
+            }
+
+            SambaMediaConfig media = medias.get(mediaId);
+
+            if (media == null) {
+                media = read(mediaId);
+
+                if (media != null) {
+                    medias.put(mediaId, media);
+                }
+            }
+
+            return media;
+        }
+    }
+
+    List<SambaMediaConfig> getAll() {
+        awaitLoaded();
+
+        synchronized (this) {
+            if (!allLoaded) {
+                readAll();
+                allLoaded = true;
+            }
+
+            List<SambaMediaConfig> list = new ArrayList<>(ids.size());
+
+            for (String id : ids) {
+                SambaMediaConfig media = medias.get(id);
+
+                if (media != null) {
+                    list.add(media);
+                }
+            }
+
+            return list;
+        }
+    }
+
+    /**
+     * Adds or replaces a media (keeps its position when replacing).
+     */
+    void put(@NonNull SambaMediaConfig media) {
+        awaitLoaded();
+
+        synchronized (this) {
+            ids.add(media.id);
+            medias.put(media.id, media);
+
+            write(TABLE, media.id, gson.toJson(media, SambaMediaConfig.class));
+        }
+    }
+
+    void remove(@NonNull String mediaId) {
+        awaitLoaded();
+
+        synchronized (this) {
+            if (!ids.remove(mediaId)) {
+                return;
+            }
+
+            medias.remove(mediaId);
+            delete(TABLE, mediaId);
+        }
+    }
+
+    /**
+     * Retrieves the data of a media being downloaded.
+     *
+     * @return The data (without subtitle) or null if not stored
+     */
+    @Nullable
+    DownloadData getDownloadData(@NonNull String mediaId) {
+        awaitLoaded();
+
+        synchronized (this) {
+            if (downloads.containsKey(mediaId)) {
+                return downloads.get(mediaId);
+            }
+
+            String json = read(TABLE_DOWNLOADS, mediaId);
+            DownloadData downloadData = null;
+
+            if (json != null) {
+                try {
+                    downloadData = gson.fromJson(json, DownloadData.class);
+                } catch (JsonParseException e) {
+                    Log.e(TAG, "Invalid download data " + mediaId, e);
+                }
+            }
+
+            downloads.put(mediaId, downloadData);
+
+            return downloadData;
+        }
+    }
+
+    void putDownloadData(@NonNull DownloadData downloadData) {
+        awaitLoaded();
+
+        synchronized (this) {
+            downloads.put(downloadData.getMediaId(), downloadData);
+            write(TABLE_DOWNLOADS, downloadData.getMediaId(), gson.toJson(downloadData, DownloadData.class));
+        }
+    }
+
+    void removeDownloadData(@NonNull String mediaId) {
+        awaitLoaded();
+
+        synchronized (this) {
+            if (downloads.containsKey(mediaId) && downloads.get(mediaId) == null) {
+                return;
+            }
+
+            downloads.put(mediaId, null);
+            delete(TABLE_DOWNLOADS, mediaId);
+        }
+    }
+
+    private static Looper startWriteThread() {
+        HandlerThread writeThread = new HandlerThread(TAG);
+        writeThread.start();
+        return writeThread.getLooper();
+    }
+
+    /**
+     * Waits for the IDs. Must not hold the lock of the store, also taken when opening the database.
+     */
+    private void awaitLoaded() {
+        boolean interrupted = false;
+
+        while (true) {
+            try {
+                loaded.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void loadIds() {
+        Cursor cursor = null;
+
+        try {
+            cursor = getReadableDatabase().query(TABLE, new String[]{COLUMN_ID}, null, null, null, null, "rowid");
+
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getString(0));
+            }
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Failed to load medias", e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    private SambaMediaConfig read(String mediaId) {
+        String json = read(TABLE, mediaId);
+        return json != null ? parse(mediaId, json) : null;
+    }
+
+    private String read(String table, String id) {
+        Cursor cursor = null;
+
+        try {
+            cursor = getReadableDatabase().query(table, new String[]{COLUMN_DATA}, COLUMN_ID + " = ?", new String[]{id}, null, null, null);
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Failed to read " + table + " " + id, e);
+            return null;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    private void readAll() {
+        Cursor cursor = null;
+
+        try {
+            cursor = getReadableDatabase().query(TABLE, new String[]{COLUMN_ID, COLUMN_DATA}, null, null, null, null, null);
+
+            while (cursor.moveToNext()) {
+                String id = cursor.getString(0);
+
+                // changed medias are newer than their rows
+                if (ids.contains(id) && !medias.containsKey(id)) {
+                    SambaMediaConfig media = parse(id, cursor.getString(1));
+
+                    if (media != null) {
+                        medias.put(id, media);
+                    }
+                }
+            }
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Failed to read medias", e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    private void write(String table, String id, String json) {
+        writeHandler.post(() -> {
+            try {
+                SQLiteDatabase db = getWritableDatabase();
+                ContentValues values = new ContentValues();
+                values.put(COLUMN_DATA, json);
+
+                if (db.update(table, values, COLUMN_ID + " = ?", new String[]{id}) == 0) {
+                    values.put(COLUMN_ID, id);
+                    db.insertOrThrow(table, null, values);
+                }
+            } catch (SQLiteException e) {
+                Log.e(TAG, "Failed to store " + table + " " + id, e);
+            }
+        });
+    }
+
+    private void delete(String table, String id) {
+        writeHandler.post(() -> {
+            try {
+                getWritableDatabase().delete(table, COLUMN_ID + " = ?", new String[]{id});
+            } catch (SQLiteException e) {
+                Log.e(TAG, "Failed to delete " + table + " " + id, e);
+            }
+        });
+    }
+
+    private SambaMediaConfig parse(String mediaId, String json) {
+        try {
+            return gson.fromJson(json, SambaMediaConfig.class);
+        } catch (JsonParseException e) {
+            Log.e(TAG, "Invalid media " + mediaId, e);
+            return null;
+        }
+    }
+
+    private static void createDownloadsTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_DOWNLOADS + " ("
+                + COLUMN_ID + " TEXT PRIMARY KEY NOT NULL, "
+                + COLUMN_DATA + " TEXT NOT NULL)");
+    }
+
+    private void importLegacyMedias(SQLiteDatabase db) {
+        String json = SharedPrefsUtils.getStringPreference(context, LEGACY_MEDIAS_KEY);
+
+        if (json == null || json.isEmpty()) {
+            return;
+        }
+
+        try {
+            Type listType = new TypeToken<List<SambaMediaConfig>>() {}.getType();
+            List<SambaMediaConfig> legacyMedias = gson.fromJson(json, listType);
+
+            if (legacyMedias != null) {
+                for (SambaMediaConfig media : legacyMedias) {
+                    ContentValues values = new ContentValues();
+                    values.put(COLUMN_ID, media.id);
+                    values.put(COLUMN_DATA, gson.toJson(media, SambaMediaConfig.class));
+                    db.insertWithOnConflict(TABLE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+                }
+            }
+
+            legacyImported = true;
+        } catch (JsonParseException e) {
+            // kept, so the medias can still be recovered (e.g. by a fixed version)
+            Log.e(TAG, "Failed to import medias", e);
+        }
+    }
+}
@@ -19,6 +19,20 @@ public class DrmRequest {
 		this.licenseUrl = licenseUrl;
 	}
 
+	/**
+	 * Copy constructor.
+	 *
+	 * @param other The request to copy from
+	 */
+	public DrmRequest(DrmRequest other) {
+		licenseUrl = other.licenseUrl;
+		urlParams = new HashMap<>(other.urlParams);
+		headerParams = new HashMap<>(other.headerParams);
+		token = other.token;
+		provider = other.provider;
+		drmOfflinePayload = other.drmOfflinePayload;
+	}
+
 	public String getLicenseUrl() {
 		String params = licenseUrl.contains("?") ? "" : "?";
 		String sep = "";
@@ -0,0 +1,220 @@
+package com.sambatech.player.plugins;
+
+import android.os.AsyncTask;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.sambatech.player.network.SambaTransport;
+
+import okhttp3.Response;
+
+import org.jose4j.base64url.internal.apache.commons.codec.binary.Base64;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.Set;
+
+/**
+ * Cache of STTM2 tokens shared by all live sessions.
+ *
+ * A token is reused until its "exp" claim and refreshed in background shortly before expiring,
+ * so beacons don't need a token request each.
+ */
+final class Sttm2TokenManager {
+
+    /**
+     * Time before expiration when tokens start being refreshed in background.
+     */
+    static final long REFRESH_MARGIN = 2 * 60 * 1000;
+
+    /**
+     * Lifetime of tokens without "exp" claim.
+     */
+    static final long DEFAULT_TTL = 5 * 60 * 1000;
+
+    private static final Sttm2TokenManager instance = new Sttm2TokenManager();
+
+    // JWT URL -> token
+    private final Map<String, Token> tokens = new HashMap<>();
+    private final Set<String> refreshing = new HashSet<>();
+
+    private Sttm2TokenManager() {}
+
+    static Sttm2TokenManager getInstance() {
+        return instance;
+    }
+
+    /**
+     * Retrieves a valid token, requesting it only if there is no cached one.
+     *
+     * @param jwtUrl URL of the token endpoint
+     * @param mediaId ID of the live media (token is obfuscated by it)
+     * @param defaultUrl Beacon URL when the token doesn't carry one
+     * @return The token or null if unavailable
+     * @throws IOException If the token request failed and can be retried
+     * @throws JSONException If the token is invalid
+     */
+    @Nullable Token get(@NonNull final String jwtUrl, final String mediaId, final String defaultUrl) throws IOException, JSONException {
+        Token token;
+
+        synchronized (this) {
+            token = tokens.get(jwtUrl);
+        }
+
+        long now = System.currentTimeMillis();
+
+        if (token == null || now >= token.expiresAt)
+            return fetch(jwtUrl, mediaId, defaultUrl);
+
+        if (now >= token.expiresAt - REFRESH_MARGIN)
+            refresh(jwtUrl, mediaId, defaultUrl);
+
+        return token;
+    }
+
+    /**
+     * Discards a cached token (e.g. rejected by the server).
+     *
+     * @param jwtUrl URL of the token endpoint
+     */
+    synchronized void invalidate(@NonNull String jwtUrl) {
+        tokens.remove(jwtUrl);
+    }
+
+    private void refresh(final String jwtUrl, final String mediaId, final String defaultUrl) {
+        synchronized (this) {
+            if (!refreshing.add(jwtUrl)) return;
+        }
+
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    fetch(jwtUrl, mediaId, defaultUrl);
+                }
+                catch (IOException | JSONException | RuntimeException e) {
+                    Log.w(Sttm2TokenManager.class.getSimpleName(), "Failed to refresh STTM2 token", e);
+                }
+                finally {
+                    synchronized (Sttm2TokenManager.this) {
+                        refreshing.remove(jwtUrl);
+                    }
+                }
+            }
+        });
+    }
+
+    private Token fetch(String jwtUrl, String mediaId, String defaultUrl) throws IOException, JSONException {
+        SambaTransport transport = SambaTransport.getInstance();
+        Response response = null;
+        Scanner scanner = null;
+        Token token = null;
+
+        try {
+            response = transport.execute(transport.newRequest(jwtUrl)
+                    .header("Content-Type", "text/plain")
+                    .build());
+
+            if (response.code() >= 500)
+                throw new IOException("STTM2 token server error: " + response.code());
+
+            if (response.isSuccessful()) {
+                scanner = new Scanner(response.body().byteStream());
+                token = parse(scanner, mediaId, defaultUrl);
+            }
+        }
+        finally {
+            if (scanner != null)
+                scanner.close();
+
+            if (response != null)
+                response.close();
+        }
+
+        synchronized (this) {
+            if (token != null)
+                tokens.put(jwtUrl, token);
+            else tokens.remove(jwtUrl);
+        }
+
+        return token;
+    }
+
+    private static Token parse(Scanner scanner, String mediaId, String defaultUrl) throws JSONException {
+        int delimiter = !TextUtils.isEmpty(mediaId) ? Integer.parseInt(mediaId.split("(?=\\d[a-zA-Z]*$)")[1].substring(0, 1)) : 0;
+
+        Scanner scannerDelimited = scanner.useDelimiter("\\A");
+
+        if (!scannerDelimited.hasNext())
+            return null;
+
+        String token = scannerDelimited.next();
+
+        token = token.substring(delimiter, token.length() - delimiter).replaceAll("-", "+").replaceAll("_", "/");
+
+        switch (token.length() % 4) {
+            case 0:
+                break;
+            case 2:
+                token += "==";
+                break;
+            case 3:
+                token += "=";
+                break;
+            default:
+        }
+
+        JSONObject json = new JSONObject(new String(Base64.decodeBase64(token)));
+
+        if (!json.has("key"))
+            return null;
+
+        String key = json.getString("key");
+        String url = json.has("url") ? json.getString("url") : !TextUtils.isEmpty(defaultUrl) ? defaultUrl : null;
+
+        return new Token(key, url, getExpiration(key));
+    }
+
+    /**
+     * Reads the "exp" claim of a JWT.
+     *
+     * @param jwt The token
+     * @return Expiration time (ms)
+     */
+    private static long getExpiration(String jwt) {
+        String[] parts = jwt.split("\\.");
+
+        if (parts.length == 3) {
+            try {
+                JSONObject claims = new JSONObject(new String(Base64.decodeBase64(parts[1])));
+
+                if (claims.has("exp"))
+                    return claims.getLong("exp") * 1000;
+            }
+            catch (JSONException e) {
+                Log.w(Sttm2TokenManager.class.getSimpleName(), "Invalid STTM2 token claims", e);
+            }
+        }
+
+        return System.currentTimeMillis() + DEFAULT_TTL;
+    }
+
+    static final class Token {
+        final String key;
+        final String url;
+        final long expiresAt;
+
+        Token(String key, String url, long expiresAt) {
+            this.key = key;
+            this.url = url;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.sambatech.player.plugins;
 
 import android.content.Context;
-import android.os.AsyncTask;
 import android.support.annotation.NonNull;
 import android.text.TextUtils;
 import android.util.Log;
@@ -13,19 +12,14 @@ import com.sambatech.player.event.SambaEvent;
 import com.sambatech.player.event.SambaEventBus;
 import com.sambatech.player.event.SambaPlayerListener;
 import com.sambatech.player.model.SambaMediaConfig;
+import com.sambatech.player.network.SambaTransport;
+import com.sambatech.player.utils.SambaScheduler;
 
-import org.jose4j.base64url.internal.apache.commons.codec.binary.Base64;
-import org.json.JSONObject;
+import okhttp3.Response;
+
+import org.json.JSONException;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Scanner;
-import java.util.Timer;
-import java.util.TimerTask;
 
 class TrackingLive implements Tracking {
 
@@ -45,21 +39,28 @@ class TrackingLive implements Tracking {
 
     private Context context;
 
+    // delivered on the bus background thread
     private SambaPlayerListener playerListener = new SambaPlayerListener() {
 
         @Override
         public void onLoad(SambaEvent event) {
             super.onLoad(event);
-            sttmLive.trackLoadEvent();
+
+            synchronized (TrackingLive.this) {
+                if (sttmLive != null)
+                    sttmLive.trackLoadEvent();
+            }
         }
 
         @Override
         public void onPlay(SambaEvent event) {
             super.onPlay(event);
 
-            if (!sttmLive.isOnEventTaskRunning()) {
-                sttmLive.trackPlayAndONEvent();
-                sttmLive.startOnEventTask();
+            synchronized (TrackingLive.this) {
+                if (sttmLive != null && !sttmLive.isOnEventTaskRunning()) {
+                    sttmLive.trackPlayAndONEvent();
+                    sttmLive.startOnEventTask();
+                }
             }
 
         }
@@ -67,14 +68,23 @@ class TrackingLive implements Tracking {
         @Override
         public void onPause(SambaEvent event) {
             super.onPause(event);
-            sttmLive.cancelOnEventTask();
-            sttmLive.trackPauseEvent();
+
+            synchronized (TrackingLive.this) {
+                if (sttmLive == null) return;
+
+                sttmLive.cancelOnEventTask();
+                sttmLive.trackPauseEvent();
+            }
         }
 
         @Override
         public void onError(SambaEvent event) {
             super.onError(event);
-            sttmLive.cancelOnEventTask();
+
+            synchronized (TrackingLive.this) {
+                if (sttmLive != null)
+                    sttmLive.cancelOnEventTask();
+            }
         }
     };
 
@@ -93,7 +103,7 @@ class TrackingLive implements Tracking {
     public void onInternalPlayerCreated(@NonNull SimpleExoPlayerView internalPlayer) {
     }
 
-    public void onDestroy() {
+    public synchronized void onDestroy() {
         Log.i("track", "destroy");
         SambaEventBus.unsubscribe(playerListener);
 
@@ -109,86 +119,53 @@ class TrackingLive implements Tracking {
         }
 
         if (media.projectHash != null && media.id != null) {
-            SambaEventBus.subscribe(playerListener);
+            SambaEventBus.subscribe(playerListener, SambaEventBus.DeliveryMode.BACKGROUND);
         }
     }
 
-    private Sttm2 getSttm2() throws Exception {
-
-        InputStream inputStream = null;
-        Scanner scanner = null;
+    /**
+     * Sends batches of live events (queued by {@link SttmLive}).
+     * Target fields: JWT URL, media ID, default STTM2 URL and the query of the beacon.
+     */
+    static final class BeaconSender implements TrackingQueue.Sender {
 
-        try {
-
-            URL myURL = new URL(getSttm2RequestUrl());
-            HttpURLConnection conn = (HttpURLConnection) myURL.openConnection();
-            conn.setRequestProperty("Content-Type", "text/plain");
-
-            int responseCode = conn.getResponseCode();
-            if (responseCode >= 200 && responseCode < 299) {
-                inputStream = conn.getInputStream();
-                scanner = new Scanner(inputStream);
-                return getSttm2ResponseFromScanner(scanner);
-            }
+        @Override
+        public void send(@NonNull String[] target, @NonNull String events) throws IOException {
+            Sttm2TokenManager tokenManager = Sttm2TokenManager.getInstance();
+            Sttm2TokenManager.Token sttm2;
 
-        } finally {
             try {
-                if (inputStream != null)
-                    inputStream.close();
-
-                if (scanner != null)
-                    scanner.close();
-            } catch (IOException e) {
-                Log.w(getClass().getSimpleName(), "Error closing server request", e);
+                // cached until expiration, shared by all live sessions
+                sttm2 = tokenManager.get(target[0], target[1], target[2]);
             }
-        }
-
-        return null;
-    }
-
-
-    private Sttm2 getSttm2ResponseFromScanner(Scanner scanner) throws Exception {
-
-        int delimiter = media.id != null ? Integer.parseInt(media.id.split("(?=\\d[a-zA-Z]*$)")[1].substring(0, 1)) : 0;
-
-        Scanner scannerDelimited = scanner.useDelimiter("\\A");
-
-        if (scannerDelimited.hasNext()) {
-            String token = scannerDelimited.next();
-
-            token = token.substring(delimiter, token.length() - delimiter).replaceAll("-", "+").replaceAll("_", "/");
-
-            switch (token.length() % 4) {
-                case 0:
-                    break;
-                case 2:
-                    token += "==";
-                    break;
-                case 3:
-                    token += "=";
-                    break;
-                default:
+            catch (JSONException | RuntimeException e) {
+                Log.e(getClass().getSimpleName(), "Invalid STTM2 token", e);
+                return;
             }
 
-            byte[] tokenBytes = Base64.decodeBase64(token);
-            String jsonString = new String(tokenBytes);
-            JSONObject json = new JSONObject(jsonString);
+            if (sttm2 == null || TextUtils.isEmpty(sttm2.key) || TextUtils.isEmpty(sttm2.url))
+                return;
 
-            if (json.has("key")) {
-                Sttm2 response = new Sttm2();
-                response.key = json.getString("key");
+            SambaTransport transport = SambaTransport.getInstance();
+            Response response = transport.execute(transport.newRequest(String.format("%s?event=%s&%s", sttm2.url, events, target[3]))
+                    .header("Authorization", "Bearer " + sttm2.key)
+                    .build());
 
-                if (json.has("url")) {
-                    response.url = json.getString("url");
-                } else {
-                    response.url = media.sttm2Url;
+            try {
+                // token expired earlier than announced, retries with a new one
+                if (response.code() == 401) {
+                    tokenManager.invalidate(target[0]);
+                    throw new IOException("STTM2 token rejected: " + response.code());
                 }
 
-                return response;
+                // other client errors are not retried
+                if (response.code() >= 500)
+                    throw new IOException("STTM2 server error: " + response.code());
+            }
+            finally {
+                response.close();
             }
         }
-
-        return null;
     }
 
     private String getSttm2RequestUrl() {
@@ -198,54 +175,24 @@ class TrackingLive implements Tracking {
         return String.format("%s%s/jwt/%s", baseUrl, media.projectHash, media.id);
     }
 
-    private class RequestTrackerLiveTask extends AsyncTask<String, Void, Void> {
-
-        @Override
-        protected Void doInBackground(String... params) {
-
-            try {
-                Sttm2 sttm2 = getSttm2();
-
-                String event = params[0];
-
-                if (sttm2 != null && !TextUtils.isEmpty(sttm2.key) && !TextUtils.isEmpty(sttm2.url)) {
-                    String sttmUrl = String.format("%s?event=%s&cid=%s&pid=%s&lid=%s&cat=%s&org=%s", sttm2.url, event, media.clientId, media.projectId, media.id, media.categoryId, ORIGIN_SDK_ANDROID);
-
-                    URL url = new URL(sttmUrl);
-
-                    HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-
-                    conn.setRequestMethod("GET");
-                    conn.setRequestProperty("Authorization", "Bearer " + sttm2.key);
-                    conn.setRequestProperty("User-Agent", System.getProperty("http.agent"));
-
-                    conn.getResponseCode();
+    private class SttmLive {
 
-                }
+        private final TrackingQueue queue = TrackingQueue.getInstance(context);
+        private final String[] target = {getSttm2RequestUrl(), media.id, media.sttm2Url,
+                String.format("cid=%s&pid=%s&lid=%s&cat=%s&org=%s", media.clientId, media.projectId, media.id, media.categoryId, ORIGIN_SDK_ANDROID)};
 
-            } catch (Exception e) {
-                Log.e(getClass().getSimpleName(), "Failed to fetch URL", e);
+        private final Runnable onEventTask = new Runnable() {
+            @Override
+            public void run() {
+                trackOnEvent();
             }
-
-            return null;
-        }
-    }
-
-    private class SttmLive {
-
-        private Timer sttm2Timer;
+        };
 
         private boolean isEventTimerTaskRunning;
 
 
         public void startOnEventTask() {
-            sttm2Timer = new Timer();
-            sttm2Timer.scheduleAtFixedRate(new TimerTask() {
-                @Override
-                public void run() {
-                    trackOnEvent();
-                }
-            }, TASK_EVENT_ON_TIME, TASK_EVENT_ON_TIME);
+            SambaScheduler.getInstance().schedule(onEventTask, TASK_EVENT_ON_TIME, TASK_EVENT_ON_TIME);
             isEventTimerTaskRunning = true;
         }
 
@@ -254,12 +201,8 @@ class TrackingLive implements Tracking {
         }
 
         public void cancelOnEventTask() {
-            if (sttm2Timer != null) {
-                sttm2Timer.cancel();
-                sttm2Timer.purge();
-                sttm2Timer = null;
-                isEventTimerTaskRunning = false;
-            }
+            SambaScheduler.getInstance().cancel(onEventTask);
+            isEventTimerTaskRunning = false;
         }
 
         void trackPlayEvent() {
@@ -295,7 +238,8 @@ class TrackingLive implements Tracking {
                 finalEvents = events[0];
             }
 
-            new RequestTrackerLiveTask().execute(finalEvents);
+            // batched and retried by the queue
+            queue.enqueue(TrackingQueue.TYPE_LIVE, finalEvents, target);
         }
 
         void destroy() {
@@ -303,11 +247,4 @@ class TrackingLive implements Tracking {
         }
 
     }
-
-
-    private class Sttm2 {
-        public String key;
-        public String url;
-    }
-
 }
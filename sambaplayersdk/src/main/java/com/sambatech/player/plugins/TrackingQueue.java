@@ -0,0 +1,488 @@
+package com.sambatech.player.plugins;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.sambatech.player.utils.Helpers;
+import com.sambatech.player.utils.SambaScheduler;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Durable queue for tracking beacons, shared by the VOD and live trackers.
+ *
+ * Events are appended to a small file (so they survive process kills) and flushed in batches:
+ * pending events of the same target (e.g. media session) are joined into a single request.
+ * Targets that fail are retried with exponential backoff (without holding back the others) and their events
+ * are dropped after {@link #MAX_ATTEMPTS} failures or {@link #MAX_AGE}. Flushing is suspended while offline.
+ */
+final class TrackingQueue {
+
+    /**
+     * Delivers a batch of events to a target.
+     */
+    interface Sender {
+        /**
+         * @param target Target fields (as enqueued)
+         * @param events Comma separated events
+         * @throws IOException If the batch must be retried
+         */
+        void send(@NonNull String[] target, @NonNull String events) throws IOException;
+    }
+
+    static final String TYPE_VOD = "vod";
+    static final String TYPE_LIVE = "live";
+
+    static final int MAX_ENTRIES = 1000;
+    static final int MAX_BATCH = 20;
+    static final int MAX_ATTEMPTS = 10;
+    static final long MAX_AGE = 24 * 60 * 60 * 1000;
+
+    private static final String FILE_NAME = "samba_tracking.queue";
+    private static final long FLUSH_INTERVAL = 5000;
+    private static final long FLUSH_INTERVAL_METERED = 30 * 1000;
+    private static final long MAX_BACKOFF = 5 * 60 * 1000;
+
+    private static TrackingQueue instance;
+
+    private final Context context;
+    private final File file;
+    private final Map<String, Sender> senders;
+    private final Executor executor;
+
+    // executor thread only
+    private final List<Entry> entries = new ArrayList<>();
+    // by target key
+    private final Map<String, Backoff> backoffs = new HashMap<>();
+    // uptime of the scheduled flush
+    private long nextFlush;
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    // fired by the scheduler (main thread)
+    private final Runnable flushTrigger = new Runnable() {
+        @Override
+        public void run() {
+            executor.execute(flushTask);
+        }
+    };
+
+    /**
+     * @param context Context for the connectivity state
+     * @param file Where the pending events are stored
+     * @param senders Sender by type
+     * @param executor Single threaded executor running the queue
+     */
+    TrackingQueue(@NonNull Context context, @NonNull File file, @NonNull Map<String, Sender> senders, @NonNull Executor executor) {
+        this.context = context.getApplicationContext();
+        this.file = file;
+        this.senders = senders;
+        this.executor = executor;
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                load();
+                scheduleFlush(FLUSH_INTERVAL);
+            }
+        });
+
+        // resumes flushing when back online
+        this.context.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                if (!Helpers.isNetworkAvailable(context)) return;
+
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        backoffs.clear();
+                        flush();
+                    }
+                });
+            }
+        }, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+    }
+
+    static synchronized TrackingQueue getInstance(@NonNull Context context) {
+        if (instance == null) {
+            Map<String, Sender> senders = new HashMap<>();
+
+            senders.put(TYPE_VOD, new TrackingVOD.BeaconSender());
+            senders.put(TYPE_LIVE, new TrackingLive.BeaconSender());
+
+            instance = new TrackingQueue(context, new File(context.getApplicationContext().getFilesDir(), FILE_NAME), senders,
+                    Executors.newSingleThreadExecutor(new ThreadFactory() {
+                        @Override
+                        public Thread newThread(@NonNull Runnable r) {
+                            return new Thread(r, "SambaTracking");
+                        }
+                    }));
+        }
+
+        return instance;
+    }
+
+    /**
+     * Appends an event (or comma separated events) to the queue.
+     * May be called from any thread.
+     *
+     * @param type Type of the sender ({@link #TYPE_VOD} or {@link #TYPE_LIVE})
+     * @param events The events
+     * @param target Fields identifying where to send the events (events with the same target are batched)
+     */
+    void enqueue(@NonNull String type, @NonNull String events, @NonNull String... target) {
+        final Entry entry = new Entry(type, events, target);
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                entries.add(entry);
+
+                if (entries.size() > MAX_ENTRIES) {
+                    entries.subList(0, entries.size() - MAX_ENTRIES).clear();
+                    persist();
+                }
+                else append(entry);
+
+                // waits for its own backoff
+                if (backoffs.containsKey(entry.key)) return;
+
+                long interval = getFlushInterval();
+
+                // also brings forward a flush held by the backoff of other targets
+                if (!SambaScheduler.getInstance().isScheduled(flushTrigger) || nextFlush > SystemClock.uptimeMillis() + interval)
+                    scheduleFlush(interval);
+            }
+        });
+    }
+
+    /**
+     * Sends the pending events, one batch per target at a time (executor thread only).
+     */
+    void flush() {
+        long now = System.currentTimeMillis();
+        boolean changed = false;
+
+        // too late to be of any use
+        for (Iterator<Entry> it = entries.iterator(); it.hasNext(); ) {
+            if (now - it.next().createdAt > MAX_AGE) {
+                it.remove();
+                changed = true;
+            }
+        }
+
+        if (changed)
+            persist();
+
+        if (entries.isEmpty()) {
+            SambaScheduler.getInstance().cancel(flushTrigger);
+            backoffs.clear();
+            return;
+        }
+
+        // waits for connectivity
+        if (!Helpers.isNetworkAvailable(context)) {
+            SambaScheduler.getInstance().cancel(flushTrigger);
+            return;
+        }
+
+        Map<String, List<Entry>> groups = new LinkedHashMap<>();
+
+        for (Entry entry : entries) {
+            List<Entry> group = groups.get(entry.key);
+
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(entry.key, group);
+            }
+
+            group.add(entry);
+        }
+
+        HashSet<Entry> removed = new HashSet<>();
+        long uptime = SystemClock.uptimeMillis();
+        changed = false;
+
+        for (Map.Entry<String, List<Entry>> kv : groups.entrySet()) {
+            Backoff backoff = backoffs.get(kv.getKey());
+
+            if (backoff != null && uptime < backoff.retryAt) continue;
+
+            List<Entry> group = kv.getValue();
+            Entry first = group.get(0);
+            Sender sender = senders.get(first.type);
+            boolean failed = false;
+
+            for (int i = 0; i < group.size() && !failed; i += MAX_BATCH) {
+                List<Entry> batch = group.subList(i, Math.min(i + MAX_BATCH, group.size()));
+                List<String> events = new ArrayList<>(batch.size());
+
+                for (Entry entry : batch)
+                    events.add(entry.events);
+
+                try {
+                    if (sender != null)
+                        sender.send(first.target, TextUtils.join(",", events));
+
+                    removed.addAll(batch);
+                }
+                catch (IOException e) {
+                    Log.w(TrackingQueue.class.getSimpleName(), "Failed to send tracking batch", e);
+                    failed = true;
+
+                    // the rest of the target waits as well
+                    for (Entry entry : group.subList(i, group.size()))
+                        if (++entry.attempts >= MAX_ATTEMPTS)
+                            removed.add(entry);
+                }
+            }
+
+            if (failed) {
+                if (backoff == null) {
+                    backoff = new Backoff();
+                    backoffs.put(kv.getKey(), backoff);
+                }
+
+                backoff.delay = backoff.delay == 0 ? FLUSH_INTERVAL : Math.min(backoff.delay * 2, MAX_BACKOFF);
+                backoff.retryAt = uptime + backoff.delay;
+                changed = true;
+            }
+            else backoffs.remove(kv.getKey());
+        }
+
+        if (!removed.isEmpty()) {
+            entries.removeAll(removed);
+            changed = true;
+        }
+
+        // keeps the attempts
+        if (changed)
+            persist();
+
+        if (entries.isEmpty()) {
+            SambaScheduler.getInstance().cancel(flushTrigger);
+            backoffs.clear();
+            return;
+        }
+
+        HashSet<String> pending = new HashSet<>();
+
+        for (Entry entry : entries)
+            pending.add(entry.key);
+
+        backoffs.keySet().retainAll(pending);
+
+        // next target due
+        long delay = backoffs.size() < pending.size() ? getFlushInterval() : Long.MAX_VALUE;
+
+        for (Backoff backoff : backoffs.values())
+            delay = Math.min(delay, Math.max(backoff.retryAt - uptime, 0));
+
+        scheduleFlush(delay);
+    }
+
+    private void scheduleFlush(long delay) {
+        if (entries.isEmpty()) return;
+
+        nextFlush = SystemClock.uptimeMillis() + delay;
+        SambaScheduler.getInstance().schedule(flushTrigger, delay, Math.max(delay, FLUSH_INTERVAL));
+    }
+
+    /**
+     * Batches longer on metered networks (less radio wakeups).
+     */
+    private long getFlushInterval() {
+        ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+
+        return connectivityManager != null && connectivityManager.isActiveNetworkMetered() ?
+                FLUSH_INTERVAL_METERED : FLUSH_INTERVAL;
+    }
+
+    private void load() {
+        if (!file.exists()) return;
+
+        Reader reader = null;
+
+        try {
+            reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+
+            StringBuilder content = new StringBuilder();
+            char[] buffer = new char[4096];
+            int len;
+
+            while ((len = reader.read(buffer)) != -1)
+                content.append(buffer, 0, len);
+
+            // only complete lines (a process kill may have interrupted the last append)
+            for (int start = 0, end; (end = content.indexOf("\n", start)) != -1; start = end + 1) {
+                Entry entry = Entry.parse(content.substring(start, end));
+
+                if (entry != null)
+                    entries.add(entry);
+            }
+        }
+        catch (IOException e) {
+            Log.w(TrackingQueue.class.getSimpleName(), "Failed to load tracking queue", e);
+        }
+        finally {
+            close(reader);
+        }
+
+        if (entries.size() > MAX_ENTRIES)
+            entries.subList(0, entries.size() - MAX_ENTRIES).clear();
+    }
+
+    private void append(Entry entry) {
+        Writer writer = null;
+
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+            writer.write(entry.toString());
+        }
+        catch (IOException e) {
+            Log.w(TrackingQueue.class.getSimpleName(), "Failed to append to tracking queue", e);
+        }
+        finally {
+            close(writer);
+        }
+    }
+
+    /**
+     * Rewrites (compacts) the file with the pending entries.
+     */
+    private void persist() {
+        if (entries.isEmpty()) {
+            if (file.exists() && !file.delete())
+                Log.w(TrackingQueue.class.getSimpleName(), "Failed to delete tracking queue");
+
+            return;
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        Writer writer = null;
+
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8");
+
+            for (Entry entry : entries)
+                writer.write(entry.toString());
+
+            writer.close();
+            writer = null;
+
+            if (!tmp.renameTo(file))
+                throw new IOException("Failed to replace tracking queue");
+        }
+        catch (IOException e) {
+            Log.w(TrackingQueue.class.getSimpleName(), "Failed to persist tracking queue", e);
+        }
+        finally {
+            close(writer);
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable == null) return;
+
+        try {
+            closeable.close();
+        }
+        catch (IOException ignored) {}
+    }
+
+    private static final class Backoff {
+        long delay;
+        long retryAt;
+    }
+
+    /**
+     * Queued event(s), stored as a tab separated line: type (followed by the creation time and the failed attempts,
+     * e.g. "vod:1500000000000:0"), events and target fields.
+     */
+    private static final class Entry {
+        final String type;
+        final String events;
+        final String[] target;
+        final String key;
+        final long createdAt;
+        int attempts;
+
+        Entry(String type, String events, String[] target) {
+            this(type, events, target, System.currentTimeMillis(), 0);
+        }
+
+        Entry(String type, String events, String[] target, long createdAt, int attempts) {
+            this.type = type;
+            this.createdAt = createdAt;
+            this.attempts = attempts;
+            this.events = sanitize(events);
+            this.target = new String[target.length];
+
+            for (int i = 0; i < target.length; ++i)
+                this.target[i] = sanitize(target[i]);
+
+            key = type + '\t' + TextUtils.join("\t", this.target);
+        }
+
+        static Entry parse(String line) {
+            String[] fields = line.split("\t", -1);
+
+            if (fields.length < 3) return null;
+
+            String[] type = fields[0].split(":");
+            String[] target = Arrays.copyOfRange(fields, 2, fields.length);
+
+            // written before the attempts were kept
+            if (type.length == 1)
+                return new Entry(type[0], fields[1], target);
+
+            try {
+                return new Entry(type[0], fields[1], target, Long.parseLong(type[1]), Integer.parseInt(type[2]));
+            }
+            catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                return null;
+            }
+        }
+
+        private static String sanitize(String field) {
+            return field != null ? field.replace('\t', ' ').replace('\n', ' ') : "";
+        }
+
+        @Override
+        public String toString() {
+            return type + ':' + createdAt + ':' + attempts + '\t' + events + '\t' + TextUtils.join("\t", target) + '\n';
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.sambatech.player.plugins;
 
 import android.content.Context;
-import android.os.AsyncTask;
 import android.support.annotation.NonNull;
 import android.text.TextUtils;
 import android.util.Log;
@@ -12,17 +11,13 @@ import com.sambatech.player.event.SambaEvent;
 import com.sambatech.player.event.SambaEventBus;
 import com.sambatech.player.event.SambaPlayerListener;
 import com.sambatech.player.model.SambaMediaConfig;
-import com.sambatech.player.utils.Helpers;
+import com.sambatech.player.network.SambaTransport;
+
+import okhttp3.Response;
 
 import java.io.IOException;
-import java.net.URL;
-import java.net.URLConnection;
-import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Locale;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.TreeSet;
 
 /**
@@ -35,27 +30,36 @@ class TrackingVOD implements Tracking {
     private SambaMediaConfig media;
     private Sttm sttm;
     private Context context;
+    private boolean destroyed;
 
+    // delivered on the bus background thread
     private SambaPlayerListener playerListener = new SambaPlayerListener() {
         @Override
         public void onStart(SambaEvent event) {
             Log.i("sttm", "onstart");
-            init();
 
-            if (sttm != null)
-                sttm.trackStart();
+            synchronized (TrackingVOD.this) {
+                init();
+
+                if (sttm != null)
+                    sttm.trackStart();
+            }
         }
 
         @Override
-        public void onProgress(SambaEvent event) {
-            if (sttm != null)
-                sttm.trackProgress((float) event.getDataAll()[0], (float) event.getDataAll()[1]);
+        public void onProgress(float time, float duration) {
+            synchronized (TrackingVOD.this) {
+                if (sttm != null)
+                    sttm.trackProgress(time, duration);
+            }
         }
 
         @Override
         public void onFinish(SambaEvent event) {
-            if (sttm != null)
-                sttm.trackComplete();
+            synchronized (TrackingVOD.this) {
+                if (sttm != null)
+                    sttm.trackComplete();
+            }
         }
     };
 
@@ -65,7 +69,7 @@ class TrackingVOD implements Tracking {
         context = player.getContext().getApplicationContext();
 
         if (media.projectHash != null && media.id != null)
-            SambaEventBus.subscribe(playerListener);
+            SambaEventBus.subscribe(playerListener, SambaEventBus.DeliveryMode.BACKGROUND);
 
         PluginManager.getInstance().notifyPluginLoaded(this);
     }
@@ -73,9 +77,10 @@ class TrackingVOD implements Tracking {
     public void onInternalPlayerCreated(@NonNull SimpleExoPlayerView internalPlayer) {
     }
 
-    public void onDestroy() {
+    public synchronized void onDestroy() {
         Log.i("track", "destroy");
         SambaEventBus.unsubscribe(playerListener);
+        destroyed = true;
 
         if (sttm != null) {
             sttm.destroy();
@@ -84,69 +89,53 @@ class TrackingVOD implements Tracking {
     }
 
     private void init() {
-        if (media.sttmUrl != null && sttm == null)
+        if (media.sttmUrl != null && sttm == null && !destroyed)
             sttm = new Sttm(context);
     }
 
-    private class UrlTracker extends AsyncTask<String, Void, Void> {
+    /**
+     * Sends batches of STTM targets (queued by {@link Sttm}).
+     */
+    static final class BeaconSender implements TrackingQueue.Sender {
 
         @Override
-        protected Void doInBackground(String... params) {
+        public void send(@NonNull String[] target, @NonNull String events) throws IOException {
+            SambaTransport transport = SambaTransport.getInstance();
+            Response response = transport.execute(transport.newRequest(target[0] + events).build());
+
             try {
-                Log.i(getClass().getSimpleName(), params[0]);
-
-                for (String url : params) {
-                    URL myURL = new URL(url);
-                    URLConnection conn = myURL.openConnection();
-                    conn.setRequestProperty("http.agent", "chrome");
-                    conn.setDoOutput(false);
-                    conn.setDoInput(true);
-                    conn.getInputStream();
-                }
-            } catch (IOException e) {
-                Log.e(getClass().getSimpleName(), "Failed to fetch URL", e);
+                // client errors are not retried
+                if (response.code() >= 500)
+                    throw new IOException("STTM server error: " + response.code());
+            }
+            finally {
+                response.close();
             }
-
-            return null;
         }
     }
 
-    private class Sttm extends TimerTask {
+    private class Sttm {
 
-        private final Context context;
-        private List<String> targets = new ArrayList<>();
-        private Timer sttmTimer;
+        private final TrackingQueue queue;
+        private final String target;
         private TreeSet<String> progresses = new TreeSet<>();
         private HashSet<Integer> trackedRetentions = new HashSet<>();
 
         Sttm(Context context) {
-            this.context = context;
-            sttmTimer = new Timer();
-            sttmTimer.scheduleAtFixedRate(this, 0, 5000);
-        }
-
-        @Override
-        public void run() {
-            if (targets.size() == 0)
-                return;
-
-            if (Helpers.isNetworkAvailable(context)) {
-                // TODO: add version to STTM (BuildConfig.VERSION_NAME)
-                new UrlTracker().execute(String.format("%s?sttmm=%s&sttmk=%s&sttms=%s&sttmu=123&sttmw=%s",
-                        media.sttmUrl, TextUtils.join(",", targets), media.sttmKey, media.sessionId,
-                        String.format("pid:%s/cat:%s/mid:%s", media.projectId, media.categoryId, media.id)));
-            }
-
-            targets.clear();
+            queue = TrackingQueue.getInstance(context);
+            // TODO: add version to STTM (BuildConfig.VERSION_NAME)
+            target = String.format("%s?sttmk=%s&sttms=%s&sttmu=123&sttmw=%s&sttmm=",
+                    media.sttmUrl, media.sttmKey, media.sessionId,
+                    String.format("pid:%s/cat:%s/mid:%s", media.projectId, media.categoryId, media.id));
         }
 
         void trackStart() {
-            targets.add("play");
+            enqueue("play");
         }
 
         void trackComplete() {
             collectProgress();
-            targets.add("complete");
+            enqueue("complete");
         }
 
         void trackProgress(float time, float duration) {
@@ -167,19 +156,20 @@ class TrackingVOD implements Tracking {
         }
 
         void destroy() {
-            if (sttmTimer != null) {
-                sttmTimer.cancel();
-                sttmTimer.purge();
-                sttmTimer = null;
-            }
+            // keeps what has been watched so far
+            collectProgress();
         }
 
         private void collectProgress() {
             if (progresses.size() == 0)
                 return;
 
-            targets.add(TextUtils.join(",", progresses));
+            enqueue(TextUtils.join(",", progresses));
             progresses.clear();
         }
+
+        private void enqueue(String events) {
+            queue.enqueue(TrackingQueue.TYPE_VOD, events, target);
+        }
     }
 }
@@ -6,6 +6,7 @@ import android.net.NetworkInfo;
 import android.os.AsyncTask;
 
 import com.sambatech.player.model.SambaMedia;
+import com.sambatech.player.network.SambaTransport;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -13,7 +14,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.Comparator;
 import java.util.Scanner;
 
@@ -67,13 +67,40 @@ public final class Helpers {
 		}
 	}
 
-	public static void requestUrl(String url, RequestCallback callback) {
-		try {
-			requestUrl((HttpURLConnection)new URL(url).openConnection(), callback);
-		}
-		catch (IOException e) {
-			e.printStackTrace();
-		}
+	/**
+	 * Requests a URL through the SDK transport (shared connections).
+	 *
+	 * @param url The URL to request
+	 * @param callback Listener for the response (main thread)
+	 */
+	public static void requestUrl(final String url, final RequestCallback callback) {
+		new AsyncTask<Void, Void, Response>() {
+			@Override
+			protected Response doInBackground(Void... params) {
+				SambaTransport transport = SambaTransport.getInstance();
+				okhttp3.Response response = null;
+
+				try {
+					response = transport.execute(transport.newRequest(url).build());
+
+					if (!response.isSuccessful())
+						throw new IOException("Server responded with HTTP " + response.code());
+
+					return new Response(response.body().string(), null);
+				}
+				catch (Exception e) {
+					return new Response(null, e);
+				}
+				finally {
+					if (response != null) response.close();
+				}
+			}
+
+			@Override
+			protected void onPostExecute(Response response) {
+				deliver(response, callback);
+			}
+		}.execute();
 	}
 
 	public static void requestUrl(HttpURLConnection con, final RequestCallback callback) {
@@ -122,16 +149,20 @@ public final class Helpers {
 
 			@Override
 			protected void onPostExecute(Response response) {
-				if (response.error != null) {
-					callback.onError(response.error, response.response);
-					return;
-				}
-
-				callback.onSuccess(response.response);
+				deliver(response, callback);
 			}
 		}.execute(con);
 	}
 
+	private static void deliver(Response response, RequestCallback callback) {
+		if (response.error != null) {
+			callback.onError(response.error, response.response);
+			return;
+		}
+
+		callback.onSuccess(response.response);
+	}
+
 	public interface RequestCallback {
 		void onSuccess(String response);
 		void onError(Exception e, String response);
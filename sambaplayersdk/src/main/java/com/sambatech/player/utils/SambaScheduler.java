@@ -0,0 +1,170 @@
+package com.sambatech.player.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single scheduler for the periodic tasks of the SDK (progress, error countdowns, tracking).
+ *
+ * All tasks run on the main thread from one looper message, so no timer threads are created.
+ * Tasks due at close times are coalesced into the same wakeup and nothing is scheduled while there are no tasks.
+ */
+public final class SambaScheduler {
+
+    /**
+     * Tasks due within this window (ms) run on the same tick.
+     */
+    public static final long COALESCE_WINDOW = 50;
+
+    private static final SambaScheduler instance = new SambaScheduler();
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final List<Task> tasks = new ArrayList<>();
+    // main thread only
+    private final List<Runnable> due = new ArrayList<>();
+    private long nextTick = Long.MAX_VALUE;
+
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            onTick();
+        }
+    };
+
+    private SambaScheduler() {}
+
+    public static SambaScheduler getInstance() {
+        return instance;
+    }
+
+    /**
+     * Schedules a periodic task starting immediately (replaces it if already scheduled).
+     *
+     * @param task The task to run on the main thread
+     * @param period Time between executions (ms)
+     */
+    public void schedule(@NonNull Runnable task, long period) {
+        schedule(task, 0, period);
+    }
+
+    /**
+     * Schedules a periodic task (replaces it if already scheduled).
+     * May be called from any thread.
+     *
+     * @param task The task to run on the main thread
+     * @param delay Time before the first execution (ms)
+     * @param period Time between executions (ms)
+     */
+    public synchronized void schedule(@NonNull Runnable task, long delay, long period) {
+        remove(task);
+        tasks.add(new Task(task, period, SystemClock.uptimeMillis() + delay));
+        reschedule();
+    }
+
+    /**
+     * Cancels a task (no-op if it is not scheduled).
+     * May be called from any thread.
+     *
+     * @param task The task to cancel
+     */
+    public synchronized void cancel(@NonNull Runnable task) {
+        if (remove(task))
+            reschedule();
+    }
+
+    public synchronized boolean isScheduled(@NonNull Runnable task) {
+        for (Task t : tasks)
+            if (t.runnable == task)
+                return true;
+
+        return false;
+    }
+
+    /**
+     * Runs a task on the main thread (immediately if already on it).
+     *
+     * @param task The task to run
+     */
+    public void execute(@NonNull Runnable task) {
+        if (Looper.myLooper() == Looper.getMainLooper())
+            task.run();
+        else handler.post(task);
+    }
+
+    private boolean remove(Runnable runnable) {
+        for (int i = 0; i < tasks.size(); ++i) {
+            if (tasks.get(i).runnable == runnable) {
+                tasks.remove(i);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void reschedule() {
+        long next = Long.MAX_VALUE;
+
+        for (Task t : tasks)
+            next = Math.min(next, t.nextRun);
+
+        if (next == nextTick) return;
+
+        handler.removeCallbacks(tick);
+        nextTick = next;
+
+        if (next != Long.MAX_VALUE)
+            handler.postAtTime(tick, next);
+    }
+
+    private void onTick() {
+        synchronized (this) {
+            long now = SystemClock.uptimeMillis();
+
+            for (Task t : tasks) {
+                if (t.nextRun > now + COALESCE_WINDOW)
+                    continue;
+
+                due.add(t.runnable);
+                // fixed rate, skipping missed runs
+                t.nextRun = t.nextRun + t.period > now ? t.nextRun + t.period : now + t.period;
+            }
+
+            nextTick = Long.MAX_VALUE;
+            reschedule();
+        }
+
+        // out of the lock, tasks may (re)schedule or cancel
+        for (Runnable task : due) {
+            // canceled by a previous task
+            if (!isScheduled(task)) continue;
+
+            try {
+                task.run();
+            }
+            catch (Exception e) {
+                Log.e(SambaScheduler.class.getSimpleName(), "Error running task", e);
+            }
+        }
+
+        due.clear();
+    }
+
+    private static final class Task {
+        final Runnable runnable;
+        final long period;
+        long nextRun;
+
+        Task(Runnable runnable, long period, long nextRun) {
+            this.runnable = runnable;
+            this.period = period;
+            this.nextRun = nextRun;
+        }
+    }
+}
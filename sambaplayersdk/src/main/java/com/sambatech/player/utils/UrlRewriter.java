@@ -0,0 +1,107 @@
+package com.sambatech.player.utils;
+
+import android.support.annotation.NonNull;
+
+import com.sambatech.player.model.SambaMedia;
+import com.sambatech.player.model.SambaMediaConfig;
+import com.sambatech.player.model.SambaMediaRequest;
+import com.sambatech.player.model.Thumbnail;
+
+import java.util.ArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites media URLs to the requested protocol.
+ *
+ * Only the scheme is touched (e.g. "http" inside paths is kept) and URLs already
+ * in the right protocol are returned as is, without allocation.
+ */
+public final class UrlRewriter {
+
+    private static final Pattern HDS_MANIFEST = Pattern.compile("\\w+\\.f4m$");
+    private static final String HLS_MANIFEST = "playlist.m3u8";
+    private static final String HTTP = "http";
+    private static final String HTTPS = "https";
+
+    private final String scheme;
+
+    public UrlRewriter(@NonNull SambaMediaRequest.Protocol protocol) {
+        scheme = protocol == SambaMediaRequest.Protocol.HTTP ? HTTP : HTTPS;
+    }
+
+    /**
+     * Replaces the URL scheme (HTTP or HTTPS only) with the configured one.
+     *
+     * @param url The URL to rewrite
+     * @return The rewritten URL or the same instance when there's nothing to change
+     */
+    public String rewrite(String url) {
+        if (url == null) return null;
+
+        int end = url.indexOf("://");
+
+        // relative or not HTTP
+        if (end != 4 && end != 5 || !url.regionMatches(true, 0, HTTPS, 0, end))
+            return url;
+
+        if (end == scheme.length() && url.startsWith(scheme))
+            return url;
+
+        return scheme + url.substring(end);
+    }
+
+    /**
+     * Replaces an HDS manifest by the HLS one (live fallback).
+     *
+     * @param url The live URL
+     * @return The HLS URL or the same instance when it's not an HDS one
+     */
+    public static String hdsToHls(String url) {
+        if (url == null || !url.endsWith(".f4m")) return url;
+
+        Matcher matcher = HDS_MANIFEST.matcher(url);
+
+        return matcher.find() ? url.substring(0, matcher.start()) + HLS_MANIFEST : url;
+    }
+
+    /**
+     * Rewrites all URLs of a media in a single pass
+     * (URL, backups, outputs, captions, thumbnail and tracking).
+     *
+     * @param media The media to update
+     */
+    public void rewrite(@NonNull SambaMediaConfig media) {
+        media.url = rewrite(media.url);
+        media.downloadUrl = rewrite(media.downloadUrl);
+        media.sttmUrl = rewrite(media.sttmUrl);
+        media.sttm2Url = rewrite(media.sttm2Url);
+
+        for (int i = 0; i < media.backupUrls.length; ++i)
+            media.backupUrls[i] = rewrite(media.backupUrls[i]);
+
+        if (media.outputs != null)
+            for (SambaMedia.Output output : media.outputs)
+                output.url = rewrite(output.url);
+
+        if (media.captions != null) {
+            ArrayList<SambaMedia.Caption> captions = media.captions;
+
+            for (int i = 0; i < captions.size(); ++i) {
+                SambaMedia.Caption caption = captions.get(i);
+                String url = rewrite(caption.url);
+
+                if (url != caption.url)
+                    captions.set(i, new SambaMedia.Caption(url, caption.label, caption.language,
+                            caption.cc, caption.isDefault));
+            }
+        }
+
+        if (media.thumb != null) {
+            String url = rewrite(media.thumb.url);
+
+            if (url != media.thumb.url)
+                media.thumb = new Thumbnail(url);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.sambatech.player;
+
+import org.junit.Assume;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+/**
+ * Minimal harness for JVM benchmarks run as unit tests.
+ *
+ * Each task is warmed up before being measured and reports the average time
+ * and the average bytes allocated by the calling thread per operation.
+ * Measurements are opt-in ({@code ./gradlew test -Dbenchmark=true}), the default suite
+ * only runs the correctness tests next to them.
+ */
+public final class Benchmark {
+
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    public static final class Result {
+        public final String name;
+        public final double nanosPerOp;
+        public final double bytesPerOp;
+
+        Result(String name, double nanosPerOp, double bytesPerOp) {
+            this.name = name;
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%-40s %12.1f us/op %14s", name, nanosPerOp / 1000,
+                    bytesPerOp >= 0 ? String.format(Locale.US, "%.0f B/op", bytesPerOp) : "n/a");
+        }
+    }
+
+    private Benchmark() {}
+
+    /**
+     * Skips the calling test unless benchmarks were enabled (system property {@code benchmark}).
+     */
+    public static void assumeEnabled() {
+        Assume.assumeTrue("benchmarks disabled", Boolean.getBoolean("benchmark"));
+    }
+
+    /**
+     * Measures a task.
+     *
+     * @param name Label of the result
+     * @param warmup Runs before measuring (JIT warm up)
+     * @param iterations Measured runs
+     * @param task The task
+     * @return The measured costs (also printed)
+     */
+    public static Result run(String name, int warmup, int iterations, Task task) throws Exception {
+        for (int i = 0; i < warmup; ++i)
+            task.run();
+
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; ++i)
+            task.run();
+
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - bytes;
+
+        Result result = new Result(name, (double) elapsed / iterations, bytes >= 0 ? (double) allocated / iterations : -1);
+
+        System.out.println(result);
+
+        return result;
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        return -1;
+    }
+}
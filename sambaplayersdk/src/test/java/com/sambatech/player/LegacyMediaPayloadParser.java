@@ -0,0 +1,316 @@
+package com.sambatech.player;
+
+import com.sambatech.player.model.SambaMedia;
+import com.sambatech.player.model.SambaMediaConfig;
+import com.sambatech.player.model.SambaMediaRequest;
+import com.sambatech.player.model.Thumbnail;
+import com.sambatech.player.plugins.DrmRequest;
+import com.sambatech.player.utils.Helpers;
+
+import org.jose4j.base64url.internal.apache.commons.codec.binary.Base64;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Scanner;
+
+/**
+ * Previous parsing path of the player API payload, kept as the benchmark baseline:
+ * whole response read into a String, Base64 decoded into another one and walked as a JSON tree.
+ *
+ * Thumbnails are not downloaded (only their URL is kept), so only parsing is compared.
+ */
+final class LegacyMediaPayloadParser {
+
+    private static final Map<String, Integer> outputMap = new HashMap<>();
+
+    static {
+        outputMap.put("_raw", -1);
+        outputMap.put("abr", 0);
+        outputMap.put("abr_hls", 0);
+        outputMap.put("240p", 1);
+        outputMap.put("360p", 2);
+        outputMap.put("480p", 3);
+        outputMap.put("720p", 4);
+        outputMap.put("1080p", 5);
+    }
+
+    private LegacyMediaPayloadParser() {}
+
+    static SambaMediaConfig parse(InputStream inputStream, SambaMediaRequest request) throws JSONException {
+        int delimiter = request.mediaId != null ? Integer.parseInt(request.mediaId.split("(?=\\d[a-zA-Z]*$)")[1].substring(0, 1)) : 0;
+        Scanner scanner = new Scanner(inputStream);
+        Scanner scannerDelimited = scanner.useDelimiter("\\A");
+
+        try {
+            if (!scannerDelimited.hasNext())
+                return null;
+
+            String token = scannerDelimited.next();
+
+            token = token.substring(delimiter, token.length() - delimiter).replaceAll("-", "+").replaceAll("_", "/");
+
+            switch (token.length() % 4) {
+                case 0:
+                    break;
+                case 2:
+                    token += "==";
+                    break;
+                case 3:
+                    token += "=";
+                    break;
+                default:
+            }
+
+            byte[] tokenBytes = Base64.decodeBase64(token);
+            // UTF-8 is the Android default charset
+            String jsonString = new String(tokenBytes, Charset.forName("UTF-8"));
+            JSONObject json = new JSONObject(jsonString);
+
+            return parseMedia(json, request);
+        }
+        finally {
+            scanner.close();
+        }
+    }
+
+    private static SambaMediaConfig parseMedia(JSONObject json, SambaMediaRequest request) throws JSONException {
+        String qualifier = json.getString("qualifier").toLowerCase();
+
+        if (!("video".equals(qualifier) || "live".equals(qualifier) || "audio".equals(qualifier)))
+            return null;
+
+        SambaMediaConfig media = new SambaMediaConfig();
+        JSONObject playerConfig = json.getJSONObject("playerConfig");
+        JSONObject apiConfig = json.getJSONObject("apiConfig");
+        JSONObject playerSecurity = json.optJSONObject("playerSecurity");
+        JSONObject projectConfig = json.getJSONObject("project");
+        JSONArray ads = json.optJSONArray("advertisings");
+
+        media.request = request;
+        media.projectHash = projectConfig.getString("playerHash");
+        media.projectId = projectConfig.getInt("id");
+        media.title = json.getString("title");
+        media.isAudioOnly = "audio".equals(qualifier) || request.isStreamAudio;
+
+        if (json.has("id"))
+            media.id = json.getString("id");
+
+        if (json.has("clientId"))
+            media.clientId = json.getInt("clientId");
+
+        if (json.has("categoryId"))
+            media.categoryId = json.getInt("categoryId");
+
+        if (json.has("deliveryRules"))
+            fillDeliveryRules(json, request, media);
+        else if (json.has("liveOutput"))
+            fillLive(json, request, media);
+
+        fillThumb(json, request, media);
+        fillCaptions(json, request, media);
+        fillTheme(media, playerConfig);
+        fillSttm(request, media, apiConfig);
+        fillAds(media, ads);
+        fillSecurity(media, playerSecurity);
+
+        return media;
+    }
+
+    private static void fillThumb(JSONObject json, SambaMediaRequest request, SambaMediaConfig media) throws JSONException {
+        JSONArray thumbs = json.optJSONArray("thumbnails");
+
+        if (thumbs != null && thumbs.length() > 0 && !thumbs.getJSONObject(0).isNull("url"))
+            media.thumb = new Thumbnail(normalizeProtocol(thumbs.getJSONObject(0).getString("url"), request.protocol));
+    }
+
+    private static void fillAds(SambaMediaConfig media, JSONArray ads) throws JSONException {
+        if (!media.isAudioOnly && (ads != null && ads.length() > 0)) {
+            JSONObject ad = ads.optJSONObject(0);
+
+            if ("dfp".equalsIgnoreCase(ad.getString("adServer")))
+                media.adUrl = ad.getString("tagVast");
+        }
+    }
+
+    private static void fillSecurity(SambaMediaConfig media, JSONObject playerSecurity) {
+        if (playerSecurity != null) {
+            JSONObject drm = playerSecurity.optJSONObject("drmSecurity");
+
+            if (drm != null) {
+                media.drmRequest = new DrmRequest(drm.optString("widevineSignatureURL"));
+                media.drmRequest.addLicenseParam("SubContentType", drm.optString("subContentType", "Default"));
+                media.drmRequest.addLicenseParam("CrmId", drm.optString("crmId"));
+                media.drmRequest.addLicenseParam("AccountId", drm.optString("accountId"));
+                media.drmRequest.addLicenseParam("ContentId", drm.optString("contentId"));
+                media.drmRequest.addLicenseParam("ApplicationId", drm.optString("applicationId"));
+                media.drmRequest.addHeaderParam("Content-Type", "application/octet-stream");
+                media.drmRequest.setProvider(drm.optString("provider"));
+            }
+
+            media.blockIfRooted = playerSecurity.optBoolean("rootedDevices", false);
+        }
+    }
+
+    private static void fillSttm(SambaMediaRequest request, SambaMediaConfig media, JSONObject apiConfig) throws JSONException {
+        if (apiConfig.has("sttm")) {
+            JSONObject sttm = apiConfig.getJSONObject("sttm");
+            media.sttmUrl = normalizeProtocol(sttm.optString("url", "http://sttm.sambatech.com.br/collector/__sttm.gif"), request.protocol);
+            media.sttmKey = sttm.optString("key", "ae810ebc7f0654c4fadc50935adcf5ec");
+
+            JSONObject sttm2 = apiConfig.getJSONObject("sttm2");
+            media.sttm2Url = normalizeProtocol(sttm2.optString("url", "https://sttm2.sambatech.com/"), request.protocol);
+            media.sttm2Key = sttm2.optString("key", "");
+        }
+    }
+
+    private static void fillTheme(SambaMediaConfig media, JSONObject playerConfig) throws JSONException {
+        final String theme = "theme";
+
+        if (playerConfig.has(theme) && !"default".equalsIgnoreCase(playerConfig.getString(theme))) {
+            media.themeColorHex = "#" + playerConfig.getString(theme);
+            media.themeColor = (int) Long.parseLong("FF" + playerConfig.getString(theme).replaceAll("^#*", ""), 16);
+        }
+    }
+
+    private static void fillCaptions(JSONObject json, SambaMediaRequest request, SambaMediaConfig media) throws JSONException {
+        JSONArray captions = json.optJSONArray("captions");
+
+        if (captions != null && captions.length() > 0) {
+            ArrayList<SambaMedia.Caption> captionArray = new ArrayList<>();
+            HashMap<String, String> langLookup = new HashMap<>();
+            JSONObject caption;
+            String lang;
+
+            langLookup.put("pt-br", "Português");
+            langLookup.put("en-us", "Inglês");
+            langLookup.put("es-es", "Espanhol");
+            langLookup.put("it-it", "Italiano");
+            langLookup.put("fr-fr", "Francês");
+            langLookup.put("zh-cn", "Chinês");
+            langLookup.put("ru-ru", "Russo");
+            langLookup.put("disable", "Desativar");
+
+            for (int j = captions.length(); j-- > 0; ) {
+                caption = captions.getJSONObject(j);
+                JSONObject fileInfo = caption.getJSONObject("fileInfo");
+                lang = fileInfo.getString("captionLanguage").toLowerCase().replace('_', '-');
+                String subtitleType = fileInfo.optBoolean("autoGenerated", false) ? " (Auto)" : fileInfo.optBoolean("closedCaption", false) ? " (CC)" : "";
+
+                captionArray.add(new SambaMedia.Caption(
+                        normalizeProtocol(caption.getString("url"), request.protocol),
+                        langLookup.get(lang) + subtitleType,
+                        lang,
+                        fileInfo.getBoolean("closedCaption"),
+                        false
+                ));
+            }
+
+            captionArray.add(new SambaMedia.Caption(null, langLookup.get("disable"), null, false, true));
+
+            media.captions = captionArray;
+        }
+    }
+
+    private static void fillLive(JSONObject json, SambaMediaRequest request, SambaMediaConfig media) throws JSONException {
+        final String reHds = "[\\w]+\\.f4m$";
+
+        media.url = normalizeProtocol(json.getJSONObject("liveOutput").getString("baseUrl").replaceAll(reHds, "playlist.m3u8"), request.protocol);
+
+        if (json.getJSONObject("liveOutput").has("backupUrl"))
+            media.backupUrls = new String[]{normalizeProtocol(json.getJSONObject("liveOutput").getString("backupUrl").replaceAll(reHds, "playlist.m3u8"), request.protocol)};
+
+        media.isLive = true;
+        media.isDvr = json.getJSONObject("liveOutput").has("dvr") && json.getJSONObject("liveOutput").getBoolean("dvr");
+
+        if (media.url.contains(".m3u8"))
+            media.type = "hls";
+        else if (media.url.contains(".mpd"))
+            media.type = "dash";
+    }
+
+    private static void fillDeliveryRules(JSONObject json, SambaMediaRequest request, SambaMediaConfig media) throws JSONException {
+        final String outputName = "outputName";
+        final String progressive = "progressive";
+
+        String defaultOutput = json.getJSONObject("project").getString("defaultOutput");
+        JSONArray rules = json.getJSONArray("deliveryRules");
+        ArrayList<String> filledRules = new ArrayList<>();
+
+        for (int i = 0; i < rules.length(); ++i) {
+            JSONObject rule = rules.getJSONObject(i);
+            String type = rule.getString("urlType").toLowerCase();
+
+            switch (type) {
+                case "dash":
+                case "hls":
+                case progressive:
+                    if (filledRules.contains(type) ||
+                            type.equals(progressive) && filledRules.contains("hls") ||
+                            (type.equals(progressive) || type.equals("hls")) && filledRules.contains("dash"))
+                        continue;
+                    break;
+                default:
+                    continue;
+            }
+
+            media.type = type;
+            ArrayList<SambaMedia.Output> mediaOutputs = new ArrayList<>();
+            JSONArray outputs = rule.getJSONArray("outputs");
+            boolean isStreaming = "hls".equals(type) || "dash".equals(type);
+            String defaultOutputCurrent = isStreaming ? "abr" : defaultOutput;
+
+            for (int j = outputs.length(); j-- > 0; ) {
+                JSONObject output = outputs.getJSONObject(j);
+                String label = output.getString(outputName);
+
+                SambaMedia.Output cOutput = new SambaMedia.Output();
+                cOutput.url = normalizeProtocol(output.getString("url"), request.protocol);
+                cOutput.label = output.getString(outputName).startsWith("abr") ? "Auto" : output.getString(outputName);
+                cOutput.position = outputMap.get(output.getString(outputName).toLowerCase());
+
+                media.duration = output.getJSONObject("fileInfo").getLong("duration") / 1000f;
+                media.bitrate = output.getJSONObject("fileInfo").getLong("bitrate");
+
+                if (media.isAudioOnly) {
+                    if (!isStreaming || !cOutput.url.contains(".mp3"))
+                        mediaOutputs.add(cOutput);
+                    continue;
+                }
+
+                if (!"_raw".equalsIgnoreCase(label) && !output.isNull("url")) {
+                    if (label.startsWith(defaultOutputCurrent)) {
+                        media.url = normalizeProtocol(output.getString("url"), request.protocol);
+                        media.defaultOutputIndex = j;
+                        cOutput.isDefault = true;
+                    }
+
+                    mediaOutputs.add(cOutput);
+                }
+            }
+
+            if (!mediaOutputs.isEmpty()) {
+                if (media.url == null)
+                    media.url = normalizeProtocol(mediaOutputs.get(0).url, request.protocol);
+
+                media.outputs = mediaOutputs;
+                filledRules.add(media.type);
+            }
+        }
+
+        if (media.outputs != null)
+            Collections.sort(media.outputs, new Helpers.CustomSorter());
+
+        media.downloadUrl = media.url;
+    }
+
+    private static String normalizeProtocol(String url, SambaMediaRequest.Protocol protocol) {
+        return url.replaceAll("(https?)", protocol.toString().toLowerCase());
+    }
+}
@@ -0,0 +1,139 @@
+package com.sambatech.player;
+
+import com.sambatech.player.model.SambaMedia;
+import com.sambatech.player.model.SambaMediaConfig;
+import com.sambatech.player.model.SambaMediaRequest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Compares the streaming payload parser with the previous JSON tree path on recorded payloads
+ * (resources/payloads: media ID on the first line, encoded API response on the second).
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MediaPayloadParserBenchmark {
+
+    private static final String[] PAYLOADS = {"live.txt", "vod.txt", "vod_large.txt"};
+    private static final int WARMUP = 500;
+    private static final int ITERATIONS = 1000;
+
+    @Test
+    public void parsersAgree() throws Exception {
+        for (String name : PAYLOADS) {
+            Payload payload = Payload.load(name);
+            SambaMediaConfig expected = LegacyMediaPayloadParser.parse(new ByteArrayInputStream(payload.token), payload.request);
+            SambaMediaConfig actual = new MediaPayloadParser(payload.request).parse(new ByteArrayInputStream(payload.token), payload.delimiter);
+
+            assertNotNull(name, expected);
+            assertNotNull(name, actual);
+            assertEquals(name, expected.id, actual.id);
+            assertEquals(name, expected.title, actual.title);
+            assertEquals(name, expected.url, actual.url);
+            assertEquals(name, expected.type, actual.type);
+            assertEquals(name, expected.isLive, actual.isLive);
+            assertEquals(name, expected.isDvr, actual.isDvr);
+            assertEquals(name, expected.adUrl, actual.adUrl);
+            assertEquals(name, expected.sttmUrl, actual.sttmUrl);
+            assertEquals(name, expected.sttm2Url, actual.sttm2Url);
+            assertEquals(name, expected.themeColor, actual.themeColor);
+            assertEquals(name, expected.defaultOutputIndex, actual.defaultOutputIndex);
+            assertEquals(name, expected.duration, actual.duration, 0);
+            assertEquals(name, expected.thumb.url, actual.thumb.url);
+            assertEquals(name, expected.backupUrls.length, actual.backupUrls.length);
+
+            if (expected.outputs != null) {
+                assertEquals(name, expected.outputs.size(), actual.outputs.size());
+
+                for (int i = 0; i < expected.outputs.size(); ++i) {
+                    SambaMedia.Output e = expected.outputs.get(i);
+                    SambaMedia.Output a = actual.outputs.get(i);
+
+                    assertEquals(name, e.url, a.url);
+                    assertEquals(name, e.label, a.label);
+                    assertEquals(name, e.position, a.position);
+                    assertEquals(name, e.isDefault, a.isDefault);
+                }
+            }
+
+            if (expected.captions != null) {
+                assertEquals(name, expected.captions.size(), actual.captions.size());
+
+                for (int i = 0; i < expected.captions.size(); ++i) {
+                    assertEquals(name, expected.captions.get(i).url, actual.captions.get(i).url);
+                    assertEquals(name, expected.captions.get(i).label, actual.captions.get(i).label);
+                    assertEquals(name, expected.captions.get(i).language, actual.captions.get(i).language);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        Benchmark.assumeEnabled();
+
+        for (String name : PAYLOADS) {
+            final Payload payload = Payload.load(name);
+
+            System.out.println(String.format("%s (%d bytes)", name, payload.token.length));
+
+            Benchmark.run("  JSON tree (previous)", WARMUP, ITERATIONS, new Benchmark.Task() {
+                @Override
+                public void run() throws Exception {
+                    LegacyMediaPayloadParser.parse(new ByteArrayInputStream(payload.token), payload.request);
+                }
+            });
+
+            Benchmark.run("  streaming", WARMUP, ITERATIONS, new Benchmark.Task() {
+                @Override
+                public void run() throws Exception {
+                    new MediaPayloadParser(payload.request).parse(new ByteArrayInputStream(payload.token), payload.delimiter);
+                }
+            });
+        }
+    }
+
+    private static final class Payload {
+        final SambaMediaRequest request;
+        final int delimiter;
+        final byte[] token;
+
+        private Payload(SambaMediaRequest request, int delimiter, byte[] token) {
+            this.request = request;
+            this.delimiter = delimiter;
+            this.token = token;
+        }
+
+        static Payload load(String name) throws IOException {
+            InputStream in = MediaPayloadParserBenchmark.class.getClassLoader().getResourceAsStream("payloads/" + name);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+
+            try {
+                for (int read; (read = in.read(buffer)) != -1; )
+                    out.write(buffer, 0, read);
+            }
+            finally {
+                in.close();
+            }
+
+            String content = new String(out.toByteArray(), Charset.forName("UTF-8"));
+            int lineEnd = content.indexOf('\n');
+            String mediaId = content.substring(0, lineEnd);
+            SambaMediaRequest request = new SambaMediaRequest("964b56b4b184c2a29e3c2065a7a15038", mediaId);
+            int delimiter = Integer.parseInt(mediaId.split("(?=\\d[a-zA-Z]*$)")[1].substring(0, 1));
+
+            return new Payload(request, delimiter, content.substring(lineEnd + 1).getBytes(Charset.forName("UTF-8")));
+        }
+    }
+}
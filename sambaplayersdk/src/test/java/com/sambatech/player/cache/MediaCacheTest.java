@@ -0,0 +1,106 @@
+package com.sambatech.player.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Disk tier of the media cache (each test reads through a new instance, so the memory tier is bypassed).
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MediaCacheTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() {
+        directory = new File(RuntimeEnvironment.application.getCacheDir(), "media_cache_test");
+        new MediaCache(directory).clear();
+    }
+
+    @Test
+    public void readsFromDisk() {
+        new MediaCache(directory).put("a", new MediaCache.Entry(new byte[]{1, 2, 3}, "\"v1\"", null, System.currentTimeMillis(), MediaCache.TTL_VOD));
+
+        MediaCache.Entry entry = new MediaCache(directory).get("a");
+
+        assertNotNull(entry);
+        assertArrayEquals(new byte[]{1, 2, 3}, entry.body);
+        assertEquals("\"v1\"", entry.etag);
+        assertNull(entry.lastModified);
+        assertEquals(0, countTempFiles());
+    }
+
+    @Test
+    public void deletesExpiredEntryOnRead() {
+        long now = System.currentTimeMillis();
+
+        new MediaCache(directory).put("a", new MediaCache.Entry(new byte[1], null, null, now - MediaCache.TTL_LIVE - 1, MediaCache.TTL_LIVE));
+
+        assertNull(new MediaCache(directory).get("a"));
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    @Test
+    public void keepsStaleEntryForRevalidation() {
+        long now = System.currentTimeMillis();
+        MediaCache cache = new MediaCache(directory);
+
+        cache.put("stale", new MediaCache.Entry(new byte[1], "\"v1\"", null, now - MediaCache.TTL_VOD - 1, MediaCache.TTL_VOD));
+        cache.put("expired", new MediaCache.Entry(new byte[1], "\"v1\"", null, now - MediaCache.TTL_VOD - MediaCache.MAX_STALE, MediaCache.TTL_VOD));
+
+        cache = new MediaCache(directory);
+
+        MediaCache.Entry entry = cache.get("stale");
+
+        assertNotNull(entry);
+        assertFalse(entry.isFresh());
+        assertNull(cache.get("expired"));
+        assertEquals(1, directory.listFiles().length);
+    }
+
+    @Test
+    public void trimsOldestEntries() {
+        MediaCache cache = new MediaCache(directory);
+        int count = (int)(MediaCache.MAX_DISK_SIZE / (1024 * 1024)) + 2;
+
+        for (int i = 0; i < count; ++i) {
+            cache.put("key" + i, new MediaCache.Entry(new byte[1024 * 1024], null, null, System.currentTimeMillis(), MediaCache.TTL_VOD));
+            // distinct modification times
+            new File(directory, Integer.toHexString(("key" + i).hashCode()) + "_" + ("key" + i).length()).setLastModified(1000L * i);
+        }
+
+        long size = 0;
+
+        for (File file : directory.listFiles())
+            size += file.length();
+
+        assertTrue(size <= MediaCache.MAX_DISK_SIZE);
+
+        cache = new MediaCache(directory);
+
+        assertNull(cache.get("key0"));
+        assertNotNull(cache.get("key" + (count - 1)));
+    }
+
+    private int countTempFiles() {
+        int count = 0;
+
+        for (File file : directory.listFiles())
+            if (file.getName().endsWith(".tmp"))
+                ++count;
+
+        return count;
+    }
+}
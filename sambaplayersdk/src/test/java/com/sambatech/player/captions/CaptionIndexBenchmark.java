@@ -0,0 +1,130 @@
+package com.sambatech.player.captions;
+
+import com.sambatech.player.Benchmark;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares cue lookups of {@link CaptionIndex} against the previous per-minute buckets
+ * on a 3-hour SRT, for playback ticks (every 250 ms) and random seeks.
+ */
+public class CaptionIndexBenchmark {
+
+    private static final int DURATION = 3 * 3600 * 1000;
+    private static final int CUE_LENGTH = 2200;
+    private static final int CUE_INTERVAL = 2700;
+    private static final int TICK = 250;
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 50;
+
+    private static String srt;
+    private static CaptionIndex index;
+    private static LegacyCaptionIndex legacyIndex;
+    private static final float[] ticks = new float[DURATION / TICK];
+    private static final float[] seeks = new float[DURATION / TICK];
+    private static long sink;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        srt = buildSrt();
+        index = new CaptionIndex();
+        new CaptionParser(index).parse(new StringReader(srt));
+        legacyIndex = new LegacyCaptionIndex(srt);
+
+        Random random = new Random(1);
+
+        for (int i = 0; i < ticks.length; ++i) {
+            ticks[i] = i * TICK / 1000f;
+            seeks[i] = random.nextFloat() * DURATION / 1000f;
+        }
+    }
+
+    @Test
+    public void findsEveryCue() {
+        int legacyMisses = 0;
+        int samples = 0;
+
+        for (int ms = 0; ms < DURATION; ms += 10) {
+            int cue = ms / CUE_INTERVAL;
+            int expected = ms - cue * CUE_INTERVAL < CUE_LENGTH ? cue : CaptionIndex.NOT_FOUND;
+
+            assertEquals("at " + ms, expected, index.find(ms));
+
+            if (expected != CaptionIndex.NOT_FOUND) {
+                ++samples;
+
+                if (legacyIndex.find(ms / 1000f) == -1)
+                    ++legacyMisses;
+            }
+        }
+
+        // cues crossing a minute boundary were never found by the previous lookup
+        System.out.println(String.format(Locale.US, "previous lookup missed %d of %d samples inside cues", legacyMisses, samples));
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        Benchmark.assumeEnabled();
+
+        System.out.println(String.format(Locale.US, "%d cues, %d lookups per op", index.size(), ticks.length));
+
+        Benchmark.run("per-minute buckets, ticks (previous)", WARMUP, ITERATIONS, new Benchmark.Task() {
+            @Override
+            public void run() {
+                for (float time : ticks)
+                    sink += legacyIndex.find(time);
+            }
+        });
+
+        Benchmark.run("CaptionIndex, ticks", WARMUP, ITERATIONS, new Benchmark.Task() {
+            @Override
+            public void run() {
+                for (float time : ticks)
+                    sink += index.find((long) (time * 1000));
+            }
+        });
+
+        Benchmark.run("per-minute buckets, seeks (previous)", WARMUP, ITERATIONS, new Benchmark.Task() {
+            @Override
+            public void run() {
+                for (float time : seeks)
+                    sink += legacyIndex.find(time);
+            }
+        });
+
+        Benchmark.run("CaptionIndex, seeks", WARMUP, ITERATIONS, new Benchmark.Task() {
+            @Override
+            public void run() {
+                for (float time : seeks)
+                    sink += index.find((long) (time * 1000));
+            }
+        });
+    }
+
+    /**
+     * A two-line cue every 2.7 s (CRLF line breaks, as most SRT files in the wild).
+     */
+    private static String buildSrt() {
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0, start = 0; start < DURATION; ++i, start += CUE_INTERVAL) {
+            builder.append(i + 1).append("\r\n")
+                    .append(formatTime(start)).append(" --> ").append(formatTime(start + CUE_LENGTH)).append("\r\n")
+                    .append("Caption line number ").append(i + 1).append("\r\n")
+                    .append("second line of text\r\n\r\n");
+        }
+
+        return builder.toString();
+    }
+
+    private static String formatTime(int ms) {
+        return String.format(Locale.US, "%02d:%02d:%02d,%03d", ms / 3600000, ms / 60000 % 60, ms / 1000 % 60, ms % 1000);
+    }
+}
@@ -0,0 +1,177 @@
+package com.sambatech.player.captions;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static com.sambatech.player.captions.CaptionParserTest.assertCue;
+import static com.sambatech.player.captions.CaptionParserTest.assertCues;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class CaptionIndexTest {
+
+    @Test
+    public void findsCueAtTime() {
+        CaptionIndex index = new CaptionIndex();
+
+        assertEquals(CaptionIndex.NOT_FOUND, index.find(0));
+
+        index.add(1000, 2000, "A");
+        index.add(3000, 4000, "B");
+
+        assertEquals(CaptionIndex.NOT_FOUND, index.find(999));
+        assertEquals(0, index.find(1000));
+        assertEquals(0, index.find(1999));
+        // end is exclusive
+        assertEquals(CaptionIndex.NOT_FOUND, index.find(2000));
+        assertEquals(1, index.find(3500));
+        assertEquals(CaptionIndex.NOT_FOUND, index.find(4000));
+    }
+
+    @Test
+    public void findsLatestStartedOverlappingCue() {
+        CaptionIndex index = new CaptionIndex();
+
+        index.add(0, 10000, "Long");
+        index.add(1000, 2000, "Short");
+        index.add(3000, 4000, "Other");
+
+        assertEquals(1, index.find(1500));
+        // back to the long cue once the later ones ended
+        assertEquals(0, index.find(2500));
+        assertEquals(2, index.find(3500));
+        assertEquals(0, index.find(9999));
+        assertEquals(CaptionIndex.NOT_FOUND, index.find(10000));
+    }
+
+    @Test
+    public void findsCuesOnSeeksAndSequentialPlayback() {
+        CaptionIndex index = new CaptionIndex();
+
+        for (int i = 0; i < 1000; ++i)
+            index.add(i * 3000, i * 3000 + 2000, "cue " + i);
+
+        // playback ticks, then seeks back and forth (the cursor is only a hint)
+        for (long time = 0; time < 3000 * 1000; time += 250)
+            assertEquals(expected(time), index.find(time));
+
+        long[] seeks = {2_999_999, 0, 1_500_000, 1_499_999, 4500, 2_000_000, 1};
+
+        for (long time : seeks)
+            assertEquals(expected(time), index.find(time));
+    }
+
+    @Test
+    public void insertsOutOfOrderCues() {
+        CaptionIndex index = new CaptionIndex();
+
+        index.add(5000, 6000, "C");
+        index.add(1000, 2000, "A");
+        index.add(7000, 8000, "D");
+        index.add(3000, 4000, "B");
+        // same start: kept after the existing one
+        index.add(3000, 3500, "B2");
+
+        assertEquals(5, index.size());
+        assertCue(index, 0, 1000, 2000, "A");
+        assertCue(index, 1, 3000, 4000, "B");
+        assertCue(index, 2, 3000, 3500, "B2");
+        assertCue(index, 3, 5000, 6000, "C");
+        assertCue(index, 4, 7000, 8000, "D");
+
+        assertEquals(0, index.find(1500));
+        assertEquals(2, index.find(3200));
+        assertEquals(1, index.find(3700));
+        assertEquals(3, index.find(5500));
+        assertEquals(4, index.find(7500));
+    }
+
+    @Test
+    public void growsPastInitialCapacity() {
+        CaptionIndex index = new CaptionIndex();
+
+        for (int i = 0; i < 1000; ++i)
+            index.add(i * 10, i * 10 + 5, Integer.toString(i));
+
+        assertEquals(1000, index.size());
+        assertCue(index, 999, 9990, 9995, "999");
+    }
+
+    @Test
+    public void readsBackWhatWasWritten() throws IOException {
+        CaptionIndex index = new CaptionIndex();
+
+        index.add(3000, 4000, "彼はその行動を知らなかった。");
+        index.add(1000, 9000, "Ação\ncoração");
+        index.add(2000, 2500, "لم يكن يعلم");
+
+        CaptionIndex read = new CaptionIndex();
+
+        read.add(0, 1, "replaced");
+        read.read(new DataInputStream(new ByteArrayInputStream(write(index))));
+
+        assertCues(index, read);
+        assertEquals(1, read.find(2200));
+        assertEquals(0, read.find(8000));
+
+        // still appendable
+        read.add(10000, 11000, "E");
+        assertEquals(4, read.size());
+        assertEquals(3, read.find(10500));
+
+        CaptionIndex empty = new CaptionIndex();
+
+        empty.read(new DataInputStream(new ByteArrayInputStream(write(new CaptionIndex()))));
+        assertEquals(0, empty.size());
+    }
+
+    @Test
+    public void rejectsInvalidData() {
+        CaptionIndex index = new CaptionIndex();
+
+        index.add(1000, 2000, "A");
+        index.add(3000, 4000, "B");
+
+        byte[] data = write(index);
+        byte[] otherVersion = data.clone();
+
+        otherVersion[7] = 99;
+
+        assertInvalid(Arrays.copyOf(data, data.length - 1));
+        assertInvalid(Arrays.copyOf(data, 10));
+        assertInvalid(otherVersion);
+        assertInvalid(new byte[]{1, 2, 3, 4, 0, 0, 0, 1});
+    }
+
+    private static int expected(long time) {
+        int i = (int) (time / 3000);
+        return time - i * 3000L < 2000 ? i : CaptionIndex.NOT_FOUND;
+    }
+
+    private static byte[] write(CaptionIndex index) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try {
+            index.write(new DataOutputStream(bytes));
+        }
+        catch (IOException e) {
+            throw new AssertionError(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static void assertInvalid(byte[] data) {
+        try {
+            new CaptionIndex().read(new DataInputStream(new ByteArrayInputStream(data)));
+            fail("Invalid data must be rejected");
+        }
+        catch (IOException expected) {}
+    }
+}
@@ -0,0 +1,116 @@
+package com.sambatech.player.captions;
+
+import com.sambatech.player.Benchmark;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares {@link CaptionParser} against the previous parsing (whole body as a String, regex splits)
+ * on 3-hour caption files in several languages and scripts.
+ */
+public class CaptionParserBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int DURATION = 3 * 3600 * 1000;
+    // long cues only need a few (about 1 MB), not a whole movie
+    private static final int LONG_CUES_DURATION = 20 * 60 * 1000;
+    private static final int CUE_LENGTH = 2400;
+    private static final int CUE_INTERVAL = 2700;
+    private static final int WARMUP = 8;
+    private static final int ITERATIONS = 10;
+
+    private static final String[] LANGUAGES = {"pt", "ja", "ar", "en"};
+    private static final String[] LINES = {
+            "Ele não sabia que a ação já estava em andamento, coração.",
+            "彼はその行動がすでに進行中であることを知らなかった。",
+            "لم يكن يعلم أن الإجراء كان جارياً بالفعل.",
+            "He did not know the action was already under way, sweetheart."
+    };
+
+    @Test
+    public void parsersAgree() throws Exception {
+        for (int i = 0; i < LANGUAGES.length; ++i) {
+            byte[] file = buildFile(i, false, 2, DURATION);
+            CaptionIndex expected = new CaptionIndex();
+            CaptionIndex index = new CaptionIndex();
+
+            LegacyCaptionParser.parse(new String(file, UTF_8), expected);
+            new CaptionParser(index).parse(new ByteArrayInputStream(file));
+
+            assertEquals(expected.size(), index.size());
+
+            // line breaks are kept now, they used to be joined with spaces
+            for (int j = 0; j < expected.size(); ++j)
+                CaptionParserTest.assertCue(index, j, expected.getStart(j), expected.getEnd(j),
+                        expected.getText(j).replace(' ' + LINES[i], '\n' + LINES[i]));
+        }
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        Benchmark.assumeEnabled();
+
+        for (int i = 0; i < LANGUAGES.length; ++i)
+            compare("SRT " + LANGUAGES[i], buildFile(i, false, 2, DURATION));
+
+        compare("WebVTT pt (not supported before)", buildFile(0, true, 2, DURATION));
+        compare("SRT en, 40-line cues (20 min)", buildFile(3, false, 40, LONG_CUES_DURATION));
+    }
+
+    private static void compare(String name, final byte[] file) throws Exception {
+        System.out.println(String.format(Locale.US, "%s: %.2f MB", name, file.length / 1048576.0));
+
+        Benchmark.run("string + regex (previous)", WARMUP, ITERATIONS, new Benchmark.Task() {
+            @Override
+            public void run() {
+                // body().string() as the previous download did
+                LegacyCaptionParser.parse(new String(file, UTF_8), new CaptionIndex());
+            }
+        });
+
+        Benchmark.run("CaptionParser", WARMUP, ITERATIONS, new Benchmark.Task() {
+            @Override
+            public void run() throws Exception {
+                new CaptionParser(new CaptionIndex()).parse(new ByteArrayInputStream(file));
+            }
+        });
+    }
+
+    /**
+     * A caption file (with BOM and CRLF line breaks) in the encoding served by the API.
+     */
+    private static byte[] buildFile(int language, boolean webVtt, int linesPerCue, int duration) {
+        StringBuilder builder = new StringBuilder("\uFEFF");
+        char separator = webVtt ? '.' : ',';
+
+        if (webVtt)
+            builder.append("WEBVTT\r\n\r\nNOTE generated\r\n\r\n");
+
+        for (int i = 1, start = 0; start < duration; ++i, start += CUE_INTERVAL) {
+            builder.append(i).append("\r\n")
+                    .append(formatTime(start, separator)).append(" --> ").append(formatTime(start + CUE_LENGTH, separator));
+
+            if (webVtt)
+                builder.append(" line:90% align:center");
+
+            builder.append("\r\n");
+
+            for (int line = 0; line < linesPerCue; ++line)
+                builder.append(LINES[language]).append("\r\n");
+
+            builder.append("\r\n");
+        }
+
+        return builder.toString().getBytes(UTF_8);
+    }
+
+    private static String formatTime(int ms, char separator) {
+        return String.format(Locale.US, "%02d:%02d:%02d%c%03d", ms / 3600000, ms / 60000 % 60, ms / 1000 % 60, separator, ms % 1000);
+    }
+}
@@ -0,0 +1,217 @@
+package com.sambatech.player.captions;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+
+public class CaptionParserTest {
+
+    private static final String SRT = "1\r\n"
+            + "00:00:01,000 --> 00:00:02,500\r\n"
+            + "First line\r\n"
+            + "second line\r\n"
+            + "\r\n"
+            + "2\r\n"
+            + "00:00:03,000 --> 00:00:04,000\r\n"
+            + "Ação, coração\r\n"
+            + "\r\n";
+
+    @Test
+    public void parsesSrt() throws IOException {
+        CaptionIndex index = parse(SRT);
+
+        assertEquals(2, index.size());
+        assertCue(index, 0, 1000, 2500, "First line\nsecond line");
+        assertCue(index, 1, 3000, 4000, "Ação, coração");
+    }
+
+    @Test
+    public void acceptsAnyLineEnding() throws IOException {
+        assertCues(parse(SRT), parse(SRT.replace("\r\n", "\n")));
+        assertCues(parse(SRT), parse(SRT.replace("\r\n", "\r")));
+    }
+
+    @Test
+    public void joinsCrlfSplitAcrossChunks() throws IOException {
+        CaptionIndex expected = parse(SRT);
+
+        // every chunk size puts the CR and LF of some line break in different reads
+        for (int chunkSize = 1; chunkSize <= 16; ++chunkSize) {
+            CaptionIndex index = new CaptionIndex();
+
+            assertEquals(2, new CaptionParser(index).parse(new ChunkedReader(SRT, chunkSize)));
+            assertCues(expected, index);
+        }
+    }
+
+    @Test
+    public void skipsBomOnlyWhenPresent() throws IOException {
+        byte[] bom = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+        byte[] srt = SRT.getBytes("UTF-8");
+        byte[] withBom = new byte[bom.length + srt.length];
+
+        System.arraycopy(bom, 0, withBom, 0, bom.length);
+        System.arraycopy(srt, 0, withBom, bom.length, srt.length);
+
+        CaptionIndex index = new CaptionIndex();
+
+        assertEquals(2, new CaptionParser(index).parse(new ByteArrayInputStream(withBom)));
+        assertCues(parse(SRT), index);
+
+        // no BOM: the first char is part of the content
+        assertCue(parse("00:00:01,000 --> 00:00:02,000\nA\n"), 0, 1000, 2000, "A");
+    }
+
+    @Test
+    public void toleratesMissingBlankLines() throws IOException {
+        CaptionIndex index = parse("1\n"
+                + "00:00:01,000 --> 00:00:02,000\n"
+                + "A\n"
+                + "2\n"
+                + "00:00:03,000 --> 00:00:04,000\n"
+                + "B\n"
+                + "3\n"
+                + "00:00:05,000 --> 00:00:06,000\n"
+                + "C");
+
+        assertEquals(3, index.size());
+        assertCue(index, 0, 1000, 2000, "A");
+        assertCue(index, 1, 3000, 4000, "B");
+        assertCue(index, 2, 5000, 6000, "C");
+    }
+
+    @Test
+    public void parsesBothTimestampFormats() {
+        assertEquals(3723004, CaptionParser.parseTime("01:02:03,004", 0, 12));
+        assertEquals(3723004, CaptionParser.parseTime("01:02:03.004", 0, 12));
+        assertEquals(123004, CaptionParser.parseTime("02:03.004", 0, 9));
+        assertEquals(123500, CaptionParser.parseTime(" 02:03.5 ", 0, 9));
+        assertEquals(123456, CaptionParser.parseTime("02:03.4567", 0, 10));
+        assertEquals(-1, CaptionParser.parseTime("123", 0, 3));
+        assertEquals(-1, CaptionParser.parseTime("00:0a:01.000", 0, 12));
+        assertEquals(-1, CaptionParser.parseTime("1:2:3:4.000", 0, 11));
+    }
+
+    @Test
+    public void parsesWebVtt() throws IOException {
+        CaptionIndex index = parse("WEBVTT - header text\n"
+                + "\n"
+                + "NOTE this block --> is not a cue\n"
+                + "\n"
+                + "STYLE\n"
+                + "::cue { color: yellow }\n"
+                + "\n"
+                + "intro\n"
+                + "00:01.000 --> 00:02.500 line:90% align:center\n"
+                + "<v Narrator>Hello\n"
+                + "\n"
+                + "01:00:00.000 --> 01:00:01.000\n"
+                + "Bye\n");
+
+        assertEquals(2, index.size());
+        assertCue(index, 0, 1000, 2500, "<v Narrator>Hello");
+        assertCue(index, 1, 3600000, 3601000, "Bye");
+    }
+
+    @Test
+    public void keepsOverlappingCues() throws IOException {
+        CaptionIndex index = parse("1\n"
+                + "00:00:01,000 --> 00:00:10,000\n"
+                + "Long\n"
+                + "\n"
+                + "2\n"
+                + "00:00:02,000 --> 00:00:03,000\n"
+                + "Short\n");
+
+        assertEquals(2, index.size());
+        assertEquals(1, index.find(2500));
+        assertEquals(0, index.find(5000));
+    }
+
+    @Test
+    public void skipsInvalidBlocks() throws IOException {
+        CaptionIndex index = parse("1\n"
+                + "00:00:05,000 --> 00:00:04,000\n"
+                + "Ends before starting\n"
+                + "\n"
+                + "2\n"
+                + "00:00:06,000 --> 00:00:07,000\n"
+                + "\n"
+                + "3\n"
+                + "garbage --> 00:00:08,000\n"
+                + "Invalid start\n"
+                + "\n"
+                + "4\n"
+                + "00:00:09,000 --> 00:00:10,000\n"
+                + "Valid\n");
+
+        assertEquals(1, index.size());
+        assertCue(index, 0, 9000, 10000, "Valid");
+    }
+
+    @Test
+    public void stopsWhenCanceled() throws IOException {
+        CaptionIndex index = new CaptionIndex();
+        CaptionParser parser = new CaptionParser(index);
+
+        parser.cancel();
+
+        assertEquals(0, parser.parse(new StringReader(SRT)));
+        assertEquals(0, index.size());
+    }
+
+    private static CaptionIndex parse(String captions) throws IOException {
+        CaptionIndex index = new CaptionIndex();
+
+        new CaptionParser(index).parse(new StringReader(captions));
+
+        return index;
+    }
+
+    static void assertCue(CaptionIndex index, int i, int start, int end, String text) {
+        assertEquals(start, index.getStart(i));
+        assertEquals(end, index.getEnd(i));
+        assertEquals(text, index.getText(i));
+    }
+
+    static void assertCues(CaptionIndex expected, CaptionIndex actual) {
+        assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); ++i)
+            assertCue(actual, i, expected.getStart(i), expected.getEnd(i), expected.getText(i));
+    }
+
+    /**
+     * Returns at most a given number of chars per read, as a slow network stream would.
+     */
+    private static final class ChunkedReader extends Reader {
+        private final String content;
+        private final int chunkSize;
+        private int position;
+
+        ChunkedReader(String content, int chunkSize) {
+            this.content = content;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position == content.length()) return -1;
+
+            int count = Math.min(Math.min(length, chunkSize), content.length() - position);
+
+            content.getChars(position, position + count, buffer, offset);
+            position += count;
+
+            return count;
+        }
+
+        @Override
+        public void close() {}
+    }
+}
@@ -0,0 +1,61 @@
+package com.sambatech.player.captions;
+
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.text.Spanned;
+import android.text.style.ForegroundColorSpan;
+import android.text.style.StyleSpan;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Markup of the cues as shown on the subtitle view.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CaptionRendererTest {
+
+    @Test
+    public void rendersItalicSrtCue() throws IOException {
+        CaptionIndex index = new CaptionIndex();
+
+        new CaptionParser(index).parse(new StringReader("1\n"
+                + "00:00:01,000 --> 00:00:02,000\n"
+                + "<i>First line</i>\n"
+                + "second line\n"));
+
+        Spanned text = (Spanned) CaptionRenderer.toCueText(index.getText(0));
+        StyleSpan[] spans = text.getSpans(0, text.length(), StyleSpan.class);
+
+        assertEquals("First line\nsecond line", text.toString());
+        assertEquals(1, spans.length);
+        assertEquals(Typeface.ITALIC, spans[0].getStyle());
+        assertEquals(0, text.getSpanStart(spans[0]));
+        assertEquals("First line".length(), text.getSpanEnd(spans[0]));
+    }
+
+    @Test
+    public void rendersBoldAndColor() {
+        Spanned text = (Spanned) CaptionRenderer.toCueText("<b>Bold</b> <font color=\"#ff0000\">red</font>");
+        StyleSpan[] styles = text.getSpans(0, text.length(), StyleSpan.class);
+        ForegroundColorSpan[] colors = text.getSpans(0, text.length(), ForegroundColorSpan.class);
+
+        assertEquals("Bold red", text.toString());
+        assertEquals(1, styles.length);
+        assertEquals(Typeface.BOLD, styles[0].getStyle());
+        assertEquals(1, colors.length);
+        assertEquals(Color.RED, colors[0].getForegroundColor());
+        assertEquals("red", text.subSequence(text.getSpanStart(colors[0]), text.getSpanEnd(colors[0])).toString());
+    }
+
+    @Test
+    public void keepsPlainText() {
+        assertEquals("Ação, coração\nsecond line", CaptionRenderer.toCueText("Ação, coração\nsecond line").toString());
+    }
+}
@@ -0,0 +1,111 @@
+package com.sambatech.player.captions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Previous cue lookup of the Captions plugin, kept as the benchmark baseline:
+ * cues bucketed per minute of their start time in a HashMap, each bucket scanned linearly.
+ */
+final class LegacyCaptionIndex {
+
+	private static final class Caption {
+		final int index;
+		final float startTime;
+		final float endTime;
+		final String text;
+
+		Caption(int index, float startTime, float endTime, String text) {
+			this.index = index;
+			this.startTime = startTime;
+			this.endTime = endTime;
+			this.text = text;
+		}
+	}
+
+	private final HashMap<Integer, Caption[]> captionsMap = new HashMap<>();
+
+	/**
+	 * Previous SRT parsing, only as needed to build the buckets.
+	 */
+	LegacyCaptionIndex(String captionsText) {
+		ArrayList<Caption> captions = new ArrayList<>();
+		String[] time;
+		String text = "";
+		float startTime = 0f;
+		float endTime = 0f;
+		int index = -1;
+		int count = 0;
+		int mLast = 0;
+		int m;
+
+		for (String s : captionsText.split("[\\r\\n]+")) {
+			if (s.matches("^\\d+$")) {
+				if (index != -1) {
+					m = (int)(startTime/60);
+
+					if (m != mLast) {
+						captionsMap.put(mLast, captions.toArray(new Caption[captions.size()]));
+						captions = new ArrayList<>();
+						mLast = m;
+					}
+
+					captions.add(new Caption(index, startTime, endTime, text));
+				}
+
+				index = Integer.parseInt(s);
+				startTime = 0f;
+				endTime = 0f;
+				text = "";
+				count = 1;
+				continue;
+			}
+
+			if (count == 1) {
+				time = s.split("\\D+");
+				startTime = extractTime(time, 0);
+				endTime = extractTime(time, 4);
+			}
+			else text += (count > 2 ? " " : "") + s;
+
+			++count;
+		}
+
+		if (index != -1) {
+			captions.add(new Caption(index, startTime, endTime, text));
+			captionsMap.put(mLast, captions.toArray(new Caption[captions.size()]));
+		}
+	}
+
+	/**
+	 * @param time Current time (secs)
+	 * @return The cue number (as in the file) or -1 if none
+	 */
+	int find(float time) {
+		final int m = (int)(time/60f);
+
+		if (!captionsMap.containsKey(m)) return -1;
+
+		for (Caption caption : captionsMap.get(m)) {
+			if (time < caption.startTime || time > caption.endTime) continue;
+
+			return caption.index;
+		}
+
+		return -1;
+	}
+
+	private static float extractTime(String[] timeInterval, int offset) {
+		try {
+			int h = Integer.parseInt(timeInterval[offset]);
+			int m = Integer.parseInt(timeInterval[offset + 1]);
+			int s = Integer.parseInt(timeInterval[offset + 2]);
+			int ms = Integer.parseInt(timeInterval[offset + 3]);
+
+			return h*3600 + m*60 + s + ms/1000f;
+		}
+		catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			return 0f;
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package com.sambatech.player.captions;
+
+/**
+ * Previous caption parsing of the Captions plugin, kept as the benchmark baseline:
+ * whole response as a String split by regexes, text concatenated line by line.
+ */
+final class LegacyCaptionParser {
+
+	private LegacyCaptionParser() {}
+
+	/**
+	 * @param captionsText The whole response (first char dropped as a BOM, as before)
+	 * @param captionIndex Index receiving the cues
+	 */
+	static void parse(String captionsText, CaptionIndex captionIndex) {
+		int index = -1;
+		int startTime = 0;
+		int endTime = 0;
+		String text = "";
+		int count = 0;
+		String[] time;
+
+		for (String s : captionsText.substring(1).split("[\\r\\n]+")) {
+			// matches caption index
+			if (s.matches("^\\d+$")) {
+				// skip first time or wrong index
+				if (index != -1)
+					captionIndex.add(startTime, endTime, text);
+
+				try { index = Integer.parseInt(s); }
+				catch(Exception e) { index = -1; }
+
+				startTime = 0;
+				endTime = 0;
+				text = "";
+				count = 1;
+				continue;
+			}
+
+			switch (count) {
+				// time interval
+				case 1:
+					time = s.split("\\D+");
+					startTime = extractTime(time, 0);
+					endTime = extractTime(time, 4);
+					break;
+				// text
+				default:
+					text += (count > 2 ? " " : "") + s;
+			}
+
+			++count;
+		}
+
+		// adding last caption entry
+		if (index != -1)
+			captionIndex.add(startTime, endTime, text);
+	}
+
+	/**
+	 * @return Time in ms
+	 */
+	private static int extractTime(String[] timeInterval, int offset) {
+		if (timeInterval.length == 0 && (timeInterval.length + offset)%4 != 0)
+			return 0;
+
+		try {
+			// parse time
+			int h = Integer.parseInt(timeInterval[offset]);
+			int m = Integer.parseInt(timeInterval[1 + offset]);
+			int s = Integer.parseInt(timeInterval[2 + offset]);
+			int ms = Integer.parseInt(timeInterval[3 + offset]);
+
+			return (h*3600 + m*60 + s)*1000 + ms;
+		}
+		catch(Exception e) {
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package com.sambatech.player.event;
+
+import com.sambatech.player.Benchmark;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the cost of posting PROGRESS (the most frequent event) to a few listeners
+ * with {@link SambaEventBus} against the previous reflection based dispatch.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SambaEventBusBenchmark {
+
+	private static final int LISTENERS = 3;
+	private static final int WARMUP = 200000;
+	private static final int ITERATIONS = 1000000;
+
+	private final LegacyEventBus legacyBus = new LegacyEventBus();
+	private final List<SambaPlayerListener> listeners = new ArrayList<>();
+	private final SambaEvent event = new SambaEvent(SambaPlayerListener.EventType.PROGRESS, 12.5f, 300f);
+	private int received;
+
+	@Before
+	public void setUp() {
+		for (int i = 0; i < LISTENERS; ++i) {
+			SambaPlayerListener listener = new SambaPlayerListener() {
+				@Override
+				public void onProgress(SambaEvent event) {
+					++received;
+				}
+
+				@Override
+				public void onLoad(SambaEvent event) {}
+			};
+
+			listeners.add(listener);
+			legacyBus.subscribe(listener);
+			SambaEventBus.subscribe(listener);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		for (SambaPlayerListener listener : listeners)
+			SambaEventBus.unsubscribe(listener);
+	}
+
+	@Test
+	public void busesAgree() {
+		received = 0;
+		legacyBus.post(event);
+		assertEquals(LISTENERS, received);
+
+		received = 0;
+		SambaEventBus.post(event);
+		assertEquals(LISTENERS, received);
+
+		received = 0;
+		SambaEventBus.postProgress(12.5f, 300f);
+		assertEquals(LISTENERS, received);
+
+		received = 0;
+		SambaEventBus.post(new SambaEvent(SambaPlayerListener.EventType.PLAY));
+		assertEquals(0, received);
+	}
+
+	@Test
+	public void benchmark() throws Exception {
+		Benchmark.assumeEnabled();
+
+		Benchmark.run("reflection dispatch (previous)", WARMUP, ITERATIONS, new Benchmark.Task() {
+			@Override
+			public void run() {
+				legacyBus.post(event);
+			}
+		});
+
+		Benchmark.run("subscriber tables", WARMUP, ITERATIONS, new Benchmark.Task() {
+			@Override
+			public void run() {
+				SambaEventBus.post(event);
+			}
+		});
+
+		Benchmark.run("subscriber tables (pooled PROGRESS)", WARMUP, ITERATIONS, new Benchmark.Task() {
+			@Override
+			public void run() {
+				SambaEventBus.postProgress(12.5f, 300f);
+			}
+		});
+	}
+}
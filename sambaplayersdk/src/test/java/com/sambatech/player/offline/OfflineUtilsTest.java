@@ -0,0 +1,171 @@
+package com.sambatech.player.offline;
+
+import android.os.HandlerThread;
+
+import com.google.gson.Gson;
+import com.sambatech.player.model.SambaMedia;
+import com.sambatech.player.model.SambaMediaConfig;
+import com.sambatech.player.offline.model.DownloadData;
+import com.sambatech.player.offline.model.SambaSubtitle;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Payload of the download actions: the binary reference to the media and the JSON of the previous versions.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class OfflineUtilsTest {
+
+    private static final String MEDIA_ID = "0b5c4e2f7a9d1c3e5f7a9b1d3e5f7a9c";
+
+    private HandlerThread writeThread;
+    private SambaMediaStore mediaStore;
+    private SambaMediaConfig media;
+
+    @Before
+    public void setUp() {
+        RuntimeEnvironment.application.deleteDatabase("samba_medias.db");
+        writeThread = new HandlerThread("OfflineUtilsTest");
+        writeThread.start();
+        mediaStore = new SambaMediaStore(RuntimeEnvironment.application, writeThread.getLooper());
+        // opens the database
+        shadowOf(writeThread.getLooper()).idle();
+
+        media = new SambaMediaConfig();
+        media.id = MEDIA_ID;
+        media.title = "Title";
+        media.url = "https://example.com/" + MEDIA_ID + ".mpd";
+        media.captions = new ArrayList<>(Arrays.asList(
+                new SambaMedia.Caption("https://example.com/pt.srt", "Português", "pt-BR", false, true),
+                new SambaMedia.Caption("https://example.com/en.srt", "English", "en-US", false, false)));
+    }
+
+    @After
+    public void tearDown() {
+        writeThread.quit();
+    }
+
+    @Test
+    public void readsMediaPayload() {
+        mediaStore.putDownloadData(new DownloadData(MEDIA_ID, "Title", 12.5, media));
+
+        byte[] data = OfflineUtils.buildDownloadData(media, null);
+
+        assertEquals(0, data[0]);
+        assertEquals(1, data[1]);
+        assertEquals(MEDIA_ID, OfflineUtils.getMediaIdFromBytes(data));
+
+        DownloadData downloadData = OfflineUtils.getDownloadDataFromBytes(data, mediaStore);
+
+        assertEquals(MEDIA_ID, downloadData.getMediaId());
+        assertEquals("Title", downloadData.getMediaTitle());
+        assertEquals(12.5, downloadData.getTotalDownloadSizeInMB(), 0);
+        assertEquals(media.url, downloadData.getSambaMedia().url);
+        assertNull(downloadData.getSambaSubtitle());
+    }
+
+    @Test
+    public void readsCaptionPayload() {
+        mediaStore.putDownloadData(new DownloadData(MEDIA_ID, "Title", 12.5, media));
+
+        byte[] data = OfflineUtils.buildDownloadData(media, new SambaSubtitle("English", media.captions.get(1)));
+        DownloadData downloadData = OfflineUtils.getDownloadDataFromBytes(data, mediaStore);
+
+        assertEquals(MEDIA_ID, OfflineUtils.getMediaIdFromBytes(data));
+        assertEquals("Title", downloadData.getMediaTitle());
+        // the size of the media is not the caption's
+        assertNull(downloadData.getTotalDownloadSizeInMB());
+        assertNotNull(downloadData.getSambaSubtitle());
+        assertEquals("English", downloadData.getSambaSubtitle().getTitle());
+        assertEquals("https://example.com/en.srt", downloadData.getSambaSubtitle().getCaption().url);
+    }
+
+    @Test
+    public void readsDownloadedMedia() {
+        mediaStore.put(media);
+
+        DownloadData downloadData = OfflineUtils.getDownloadDataFromBytes(OfflineUtils.buildDownloadData(media, null), mediaStore);
+
+        assertEquals(MEDIA_ID, downloadData.getMediaId());
+        assertEquals("Title", downloadData.getMediaTitle());
+        assertNull(downloadData.getTotalDownloadSizeInMB());
+        assertEquals(media.url, downloadData.getSambaMedia().url);
+    }
+
+    @Test
+    public void givesEachCallerItsOwnMedia() {
+        mediaStore.putDownloadData(new DownloadData(MEDIA_ID, "Title", 12.5, media));
+
+        byte[] data = OfflineUtils.buildDownloadData(media, null);
+        DownloadData first = OfflineUtils.getDownloadDataFromBytes(data, mediaStore);
+        DownloadData second = OfflineUtils.getDownloadDataFromBytes(data, mediaStore);
+
+        assertNotSame(first.getSambaMedia(), second.getSambaMedia());
+
+        first.getSambaMedia().isOffline = true;
+        first.getSambaMedia().isSubtitlesOffline = true;
+
+        assertFalse(second.getSambaMedia().isOffline);
+        assertFalse(second.getSambaMedia().isSubtitlesOffline);
+        assertFalse(mediaStore.getDownloadData(MEDIA_ID).getSambaMedia().isOffline);
+    }
+
+    @Test
+    public void readsLegacyJsonPayload() {
+        DownloadData legacy = new DownloadData(MEDIA_ID, "Title", 12.5, media);
+        legacy.setSambaSubtitle(new SambaSubtitle("English", media.captions.get(1)));
+
+        byte[] data = new Gson().toJson(legacy).getBytes(Charset.forName("UTF-8"));
+
+        assertEquals(MEDIA_ID, OfflineUtils.getMediaIdFromBytes(data));
+
+        DownloadData downloadData = OfflineUtils.getDownloadDataFromBytes(data, mediaStore);
+
+        assertEquals(MEDIA_ID, downloadData.getMediaId());
+        assertEquals("Title", downloadData.getMediaTitle());
+        assertEquals(12.5, downloadData.getTotalDownloadSizeInMB(), 0);
+        assertEquals(media.url, downloadData.getSambaMedia().url);
+        assertEquals("https://example.com/en.srt", downloadData.getSambaSubtitle().getCaption().url);
+
+        // reading does not import
+        assertNull(mediaStore.getDownloadData(MEDIA_ID));
+    }
+
+    @Test
+    public void importsLegacyPayloadOnly() {
+        byte[] legacy = new Gson().toJson(new DownloadData(MEDIA_ID, "Title", 12.5, media)).getBytes(Charset.forName("UTF-8"));
+
+        OfflineUtils.importLegacyDownloadData(OfflineUtils.buildDownloadData(media, null), mediaStore);
+
+        assertNull(mediaStore.getDownloadData(MEDIA_ID));
+
+        OfflineUtils.importLegacyDownloadData(legacy, mediaStore);
+
+        DownloadData stored = mediaStore.getDownloadData(MEDIA_ID);
+
+        assertNotNull(stored);
+        assertEquals(12.5, stored.getTotalDownloadSizeInMB(), 0);
+
+        // binary actions of the media now find it
+        DownloadData downloadData = OfflineUtils.getDownloadDataFromBytes(OfflineUtils.buildDownloadData(media, null), mediaStore);
+
+        assertEquals("Title", downloadData.getMediaTitle());
+        assertNotSame(stored.getSambaMedia(), downloadData.getSambaMedia());
+    }
+}
@@ -0,0 +1,186 @@
+package com.sambatech.player.offline;
+
+import android.os.HandlerThread;
+
+import com.google.gson.Gson;
+import com.sambatech.player.model.SambaMediaConfig;
+import com.sambatech.player.offline.model.DownloadData;
+import com.sambatech.player.utils.SharedPrefsUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Persistence of the downloaded medias, read back through a new store (as on the next launch).
+ * The background work of the stores runs on the test thread, when their looper is idled.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SambaMediaStoreTest {
+
+    private static final String DATABASE_NAME = "samba_medias.db";
+    private static final String LEGACY_MEDIAS_KEY = "MEDIAS_PERSISTED_KEY";
+
+    private HandlerThread writeThread;
+
+    @Before
+    public void setUp() {
+        RuntimeEnvironment.application.deleteDatabase(DATABASE_NAME);
+        SharedPrefsUtils.clearPreferenceByKey(RuntimeEnvironment.application, LEGACY_MEDIAS_KEY);
+
+        writeThread = new HandlerThread("SambaMediaStoreTest");
+        writeThread.start();
+    }
+
+    @After
+    public void tearDown() {
+        writeThread.quit();
+    }
+
+    @Test
+    public void opensInBackground() {
+        SharedPrefsUtils.setStringPreference(RuntimeEnvironment.application, LEGACY_MEDIAS_KEY, new Gson().toJson(Arrays.asList(buildMedia("a"))));
+
+        new SambaMediaStore(RuntimeEnvironment.application, writeThread.getLooper());
+
+        // neither created nor imported on the calling thread
+        assertFalse(RuntimeEnvironment.application.getDatabasePath(DATABASE_NAME).exists());
+
+        idle();
+
+        assertTrue(RuntimeEnvironment.application.getDatabasePath(DATABASE_NAME).exists());
+        assertNull(SharedPrefsUtils.getStringPreference(RuntimeEnvironment.application, LEGACY_MEDIAS_KEY));
+    }
+
+    @Test
+    public void importsLegacyMedias() {
+        List<SambaMediaConfig> legacy = Arrays.asList(buildMedia("a"), buildMedia("b"));
+
+        SharedPrefsUtils.setStringPreference(RuntimeEnvironment.application, LEGACY_MEDIAS_KEY, new Gson().toJson(legacy));
+
+        SambaMediaStore store = open();
+
+        assertEquals(Arrays.asList("a", "b"), store.getIds());
+        assertEquals("Media b", store.get("b").title);
+        assertNull(SharedPrefsUtils.getStringPreference(RuntimeEnvironment.application, LEGACY_MEDIAS_KEY));
+
+        // not imported again
+        store.remove("a");
+
+        assertEquals(Arrays.asList("b"), reopen().getIds());
+    }
+
+    @Test
+    public void keepsLegacyMediasWhenInvalid() {
+        SharedPrefsUtils.setStringPreference(RuntimeEnvironment.application, LEGACY_MEDIAS_KEY, "[{\"id\":");
+
+        SambaMediaStore store = open();
+
+        assertTrue(store.getIds().isEmpty());
+        assertEquals("[{\"id\":", SharedPrefsUtils.getStringPreference(RuntimeEnvironment.application, LEGACY_MEDIAS_KEY));
+    }
+
+    @Test
+    public void readsMediasLazily() {
+        SambaMediaStore store = open();
+
+        store.put(buildMedia("a"));
+        store.put(buildMedia("b"));
+        store.put(buildMedia("c"));
+
+        store = reopen();
+
+        assertEquals(Arrays.asList("a", "b", "c"), store.getIds());
+        assertTrue(store.contains("b"));
+        assertFalse(store.contains("d"));
+        assertEquals("Media b", store.get("b").title);
+        assertNull(store.get("d"));
+
+        List<SambaMediaConfig> all = store.getAll();
+
+        assertEquals(3, all.size());
+        assertEquals("a", all.get(0).id);
+        assertEquals("b", all.get(1).id);
+        assertEquals("c", all.get(2).id);
+    }
+
+    @Test
+    public void appliesChangesInOrder() {
+        SambaMediaStore store = open();
+        SambaMediaConfig renamed = buildMedia("b");
+
+        renamed.title = "Renamed";
+
+        store.put(buildMedia("a"));
+        store.put(buildMedia("b"));
+        store.remove("a");
+        store.put(buildMedia("c"));
+        // replacing keeps the position
+        store.put(renamed);
+        store.put(buildMedia("a"));
+
+        assertEquals(Arrays.asList("b", "c", "a"), store.getIds());
+        assertEquals("Renamed", store.get("b").title);
+
+        store = reopen();
+
+        assertEquals(Arrays.asList("b", "c", "a"), store.getIds());
+        assertEquals("Renamed", store.get("b").title);
+        assertEquals(3, store.getAll().size());
+    }
+
+    @Test
+    public void keepsDownloadData() {
+        SambaMediaStore store = open();
+
+        store.putDownloadData(new DownloadData("a", "Media a", 12.5, buildMedia("a")));
+        store.putDownloadData(new DownloadData("b", "Media b", 1.5, buildMedia("b")));
+        store.removeDownloadData("b");
+
+        store = reopen();
+
+        assertEquals(12.5, store.getDownloadData("a").getTotalDownloadSizeInMB(), 0);
+        assertEquals("Media a", store.getDownloadData("a").getSambaMedia().title);
+        assertNull(store.getDownloadData("b"));
+        // not a downloaded media
+        assertFalse(store.contains("a"));
+    }
+
+    private SambaMediaStore open() {
+        SambaMediaStore store = new SambaMediaStore(RuntimeEnvironment.application, writeThread.getLooper());
+        idle();
+        return store;
+    }
+
+    /**
+     * Writes the changes and opens a new store.
+     */
+    private SambaMediaStore reopen() {
+        idle();
+        return open();
+    }
+
+    private void idle() {
+        shadowOf(writeThread.getLooper()).idle();
+    }
+
+    private static SambaMediaConfig buildMedia(String id) {
+        SambaMediaConfig media = new SambaMediaConfig();
+        media.id = id;
+        media.title = "Media " + id;
+        media.url = "https://example.com/" + id + ".mpd";
+        return media;
+    }
+}
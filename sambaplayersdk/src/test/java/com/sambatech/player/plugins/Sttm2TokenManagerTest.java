@@ -0,0 +1,154 @@
+package com.sambatech.player.plugins;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Token reuse of the STTM2 beacons against a local server standing in for the token endpoint and the collector.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class Sttm2TokenManagerTest {
+
+    // tokens are padded by the last digit of the media ID (followed only by letters)
+    private static final String MEDIA_ID = "8a4c2e0f6b1d3a5c7e9f0b2d4a6c8e3f";
+    private static final int DELIMITER = 3;
+    private static final String QUERY = "cid=1&pid=2&lid=" + MEDIA_ID + "&cat=3&org=test";
+    private static final long TIMEOUT = 5000;
+
+    // the manager is shared, each test gets its own token URL
+    private static int testCount;
+
+    private final MockWebServer server = new MockWebServer();
+    private final AtomicInteger tokenRequests = new AtomicInteger();
+    private final AtomicInteger beaconRequests = new AtomicInteger();
+    private final TrackingLive.BeaconSender sender = new TrackingLive.BeaconSender();
+    private volatile long tokenLifetime;
+    private volatile boolean rejectNextBeacon;
+    private String[] target;
+
+    @Before
+    public void setUp() throws IOException {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath().startsWith("/jwt/")) {
+                    tokenRequests.incrementAndGet();
+                    return new MockResponse().setBody(buildToken(System.currentTimeMillis() / 1000 + tokenLifetime / 1000));
+                }
+
+                if (request.getPath().startsWith("/beacon")) {
+                    beaconRequests.incrementAndGet();
+
+                    if (rejectNextBeacon) {
+                        rejectNextBeacon = false;
+                        return new MockResponse().setResponseCode(401);
+                    }
+
+                    return new MockResponse();
+                }
+
+                return new MockResponse().setResponseCode(404);
+            }
+        });
+        server.start();
+
+        target = new String[]{server.url("/jwt/" + ++testCount + "/" + MEDIA_ID).toString(), MEDIA_ID, null, QUERY};
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void oneTokenServesManyBeacons() throws IOException {
+        tokenLifetime = 60 * 60 * 1000;
+
+        for (int i = 0; i < 10; ++i)
+            sender.send(target, "on");
+
+        assertEquals(1, tokenRequests.get());
+        assertEquals(10, beaconRequests.get());
+    }
+
+    @Test
+    public void refreshesInBackgroundWithinMargin() throws Exception {
+        tokenLifetime = Sttm2TokenManager.REFRESH_MARGIN - 30 * 1000;
+
+        sender.send(target, "lo");
+        assertEquals(1, tokenRequests.get());
+
+        // still valid: the beacon is sent right away and the token is refreshed behind it
+        sender.send(target, "pl");
+        assertEquals(2, beaconRequests.get());
+
+        await(tokenRequests, 2);
+        assertEquals(2, tokenRequests.get());
+    }
+
+    @Test
+    public void rejectedTokenIsFetchedOnce() throws IOException {
+        tokenLifetime = 60 * 60 * 1000;
+
+        sender.send(target, "lo");
+
+        rejectNextBeacon = true;
+
+        try {
+            sender.send(target, "pl");
+            fail("Rejected beacon must be retried");
+        }
+        catch (IOException expected) {}
+
+        assertEquals(1, tokenRequests.get());
+
+        sender.send(target, "pl");
+        sender.send(target, "on");
+        sender.send(target, "on");
+
+        assertEquals(2, tokenRequests.get());
+        assertEquals(5, beaconRequests.get());
+    }
+
+    private String buildToken(long expiration) {
+        String jwt = encode("{\"alg\":\"HS256\",\"typ\":\"JWT\"}") + "." + encode("{\"exp\":" + expiration + "}") + ".c2lnbmF0dXJl";
+        String payload = encode("{\"key\":\"" + jwt + "\",\"url\":\"" + server.url("/beacon") + "\"}");
+        StringBuilder token = new StringBuilder();
+
+        for (int i = 0; i < DELIMITER; ++i)
+            token.append('x');
+
+        token.append(payload);
+
+        for (int i = 0; i < DELIMITER; ++i)
+            token.append('x');
+
+        return token.toString();
+    }
+
+    private static String encode(String json) {
+        return java.util.Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(Charset.forName("UTF-8")));
+    }
+
+    private static void await(AtomicInteger counter, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+
+        while (counter.get() < expected && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+    }
+}
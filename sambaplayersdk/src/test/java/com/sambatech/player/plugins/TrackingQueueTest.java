@@ -0,0 +1,230 @@
+package com.sambatech.player.plugins;
+
+import android.support.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Batching, persistence and retries of the tracking queue, run on the test thread against a fake sender.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TrackingQueueTest {
+
+    private final List<String> sent = new ArrayList<>();
+    private final Set<String> failingTargets = new HashSet<>();
+    private int attempts;
+    private File file;
+
+    private final TrackingQueue.Sender sender = new TrackingQueue.Sender() {
+        @Override
+        public void send(@NonNull String[] target, @NonNull String events) throws IOException {
+            ++attempts;
+
+            if (failingTargets.contains(target[0]))
+                throw new IOException("unavailable: " + target[0]);
+
+            sent.add(target[0] + "=" + events);
+        }
+    };
+
+    private final Executor directExecutor = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+    };
+
+    @Before
+    public void setUp() {
+        file = new File(RuntimeEnvironment.application.getFilesDir(), "tracking_test.queue");
+
+        if (file.exists())
+            assertTrue(file.delete());
+    }
+
+    @Test
+    public void dropsHalfWrittenLastLine() throws IOException {
+        write("vod\tplay\tA\n"
+                + "vod:" + System.currentTimeMillis() + ":0\tpause\tA\n"
+                + "vod:" + System.currentTimeMillis() + ":0\tpro");
+
+        createQueue().flush();
+
+        assertEquals(Collections.singletonList("A=play,pause"), sent);
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void groupsByTargetInBatches() {
+        TrackingQueue queue = createQueue();
+        int count = TrackingQueue.MAX_BATCH * 2 + 5;
+
+        for (int i = 0; i < count; ++i) {
+            queue.enqueue(TrackingQueue.TYPE_VOD, "a" + i, "A");
+
+            if (i % 10 == 0)
+                queue.enqueue(TrackingQueue.TYPE_VOD, "b" + i, "B");
+        }
+
+        queue.flush();
+
+        assertEquals(4, sent.size());
+        assertEquals("A=" + join("a", 0, TrackingQueue.MAX_BATCH, 1), sent.get(0));
+        assertEquals("A=" + join("a", TrackingQueue.MAX_BATCH, TrackingQueue.MAX_BATCH * 2, 1), sent.get(1));
+        assertEquals("A=" + join("a", TrackingQueue.MAX_BATCH * 2, count, 1), sent.get(2));
+        assertEquals("B=" + join("b", 0, count, 10), sent.get(3));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void keepsFailedTargetOnly() throws IOException {
+        TrackingQueue queue = createQueue();
+
+        failingTargets.add("A");
+        queue.enqueue(TrackingQueue.TYPE_VOD, "a1", "A");
+        queue.enqueue(TrackingQueue.TYPE_VOD, "b1", "B");
+        queue.enqueue(TrackingQueue.TYPE_VOD, "a2", "A");
+        queue.flush();
+
+        // the other targets are not held back
+        assertEquals(Collections.singletonList("B=b1"), sent);
+
+        // compacted to the pending entries, with their attempts
+        List<String> lines = readLines();
+
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).matches("vod:\\d+:1\ta1\tA"));
+        assertTrue(lines.get(1).matches("vod:\\d+:1\ta2\tA"));
+
+        // backing off
+        int previousAttempts = attempts;
+
+        queue.enqueue(TrackingQueue.TYPE_VOD, "b2", "B");
+        queue.flush();
+
+        assertEquals(previousAttempts + 1, attempts);
+        assertEquals("B=b2", sent.get(1));
+
+        // delivered by the next instance
+        failingTargets.clear();
+        sent.clear();
+        createQueue().flush();
+
+        assertEquals(Collections.singletonList("A=a1,a2"), sent);
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void dropsAfterMaxAttempts() throws IOException {
+        write("vod:" + System.currentTimeMillis() + ":" + (TrackingQueue.MAX_ATTEMPTS - 1) + "\tlast\tA\n"
+                + "vod:" + System.currentTimeMillis() + ":0\tfirst\tA\n");
+        failingTargets.add("A");
+
+        createQueue().flush();
+
+        assertEquals(1, attempts);
+
+        List<String> lines = readLines();
+
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).matches("vod:\\d+:1\tfirst\tA"));
+    }
+
+    @Test
+    public void dropsExpiredEntries() throws IOException {
+        write("vod:" + (System.currentTimeMillis() - TrackingQueue.MAX_AGE - 1000) + ":0\told\tA\n"
+                + "vod:" + System.currentTimeMillis() + ":0\tnew\tA\n");
+
+        createQueue().flush();
+
+        assertEquals(Collections.singletonList("A=new"), sent);
+    }
+
+    @Test
+    public void capsEntries() {
+        TrackingQueue queue = createQueue();
+        int count = TrackingQueue.MAX_ENTRIES + 5;
+
+        for (int i = 0; i < count; ++i)
+            queue.enqueue(TrackingQueue.TYPE_VOD, "a" + i, "A");
+
+        // oldest ones dropped (also from the file)
+        createQueue().flush();
+
+        assertEquals(TrackingQueue.MAX_ENTRIES / TrackingQueue.MAX_BATCH, sent.size());
+        assertTrue(sent.get(0).startsWith("A=a5,a6,"));
+        assertTrue(sent.get(sent.size() - 1).endsWith(",a" + (count - 1)));
+    }
+
+    private TrackingQueue createQueue() {
+        return new TrackingQueue(RuntimeEnvironment.application, file,
+                Collections.singletonMap(TrackingQueue.TYPE_VOD, sender), directExecutor);
+    }
+
+    private static String join(String prefix, int from, int to, int step) {
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = from; i < to; i += step)
+            builder.append(builder.length() > 0 ? "," : "").append(prefix).append(i);
+
+        return builder.toString();
+    }
+
+    private void write(String content) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+
+        try {
+            writer.write(content);
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    private List<String> readLines() throws IOException {
+        StringBuilder content = new StringBuilder();
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+
+        try {
+            char[] buffer = new char[4096];
+            int len;
+
+            while ((len = reader.read(buffer)) != -1)
+                content.append(buffer, 0, len);
+        }
+        finally {
+            reader.close();
+        }
+
+        List<String> lines = new ArrayList<>();
+
+        for (String line : content.toString().split("\n"))
+            if (!line.isEmpty())
+                lines.add(line);
+
+        return lines;
+    }
+}
@@ -0,0 +1,142 @@
+package com.sambatech.player.utils;
+
+import com.sambatech.player.Benchmark;
+import com.sambatech.player.model.SambaMedia;
+import com.sambatech.player.model.SambaMediaConfig;
+import com.sambatech.player.model.SambaMediaRequest;
+import com.sambatech.player.model.Thumbnail;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Compares the per-media cost of rewriting URL schemes with {@link UrlRewriter}
+ * against the previous regex replacement of each URL.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class UrlRewriterBenchmark {
+
+    private static final String BASE = "http://pvbps-sambavideos.akamaized.net/account/1874/a3f5c2e1b7d94c0e8f6a2b1c3d4e5f6b/";
+    private static final String[] OUTPUTS = {"abr", "240p", "360p", "480p", "720p", "1080p"};
+    private static final String[] LANGUAGES = {"pt-br", "en-us", "es-es", "fr-fr"};
+    private static final int WARMUP = 20000;
+    private static final int ITERATIONS = 100000;
+
+    private final SambaMediaConfig media = new SambaMediaConfig();
+    private final UrlRewriter rewriter = new UrlRewriter(SambaMediaRequest.Protocol.HTTPS);
+
+    @Test
+    public void rewritesSchemeOnly() {
+        assertEquals("https://host/http-live/video.m3u8", rewriter.rewrite("http://host/http-live/video.m3u8"));
+        assertEquals("https://host/v.mp4", rewriter.rewrite("HTTP://host/v.mp4"));
+        assertEquals("rtmp://host/http", rewriter.rewrite("rtmp://host/http"));
+        assertEquals("//host/v.mp4", rewriter.rewrite("//host/v.mp4"));
+
+        String url = "https://host/v.mp4";
+        assertSame(url, rewriter.rewrite(url));
+        assertEquals("http://host/v.mp4", new UrlRewriter(SambaMediaRequest.Protocol.HTTP).rewrite(url));
+    }
+
+    @Test
+    public void rewritesAllMediaUrls() {
+        reset();
+        rewriter.rewrite(media);
+
+        assertEquals(BASE.replace("http:", "https:") + "hls/abr.m3u8", media.url);
+        assertEquals(media.url, media.downloadUrl);
+        assertEquals("https://sttm.sambatech.com.br/collector/__sttm.gif", media.sttmUrl);
+        assertEquals("https://sttm2.sambatech.com/", media.sttm2Url);
+        assertEquals("https://live2-sambavideos.akamaized.net/backup.m3u8", media.backupUrls[0]);
+        assertEquals("https://pvbps-sambavideos.akamaized.net/thumb.jpg", media.thumb.url);
+
+        for (SambaMedia.Output output : media.outputs)
+            assertEquals(0, output.url.indexOf("https://"));
+
+        for (SambaMedia.Caption caption : media.captions)
+            if (caption.url != null)
+                assertEquals(0, caption.url.indexOf("https://"));
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        Benchmark.assumeEnabled();
+
+        Benchmark.run("reset only (baseline)", WARMUP, ITERATIONS, new Benchmark.Task() {
+            @Override
+            public void run() {
+                reset();
+            }
+        });
+
+        Benchmark.run("replaceAll per URL (previous)", WARMUP, ITERATIONS, new Benchmark.Task() {
+            @Override
+            public void run() {
+                reset();
+                rewriteWithRegex("https");
+            }
+        });
+
+        Benchmark.run("UrlRewriter single pass", WARMUP, ITERATIONS, new Benchmark.Task() {
+            @Override
+            public void run() {
+                reset();
+                rewriter.rewrite(media);
+            }
+        });
+    }
+
+    /**
+     * Restores the URLs as received from the API (HTTP).
+     */
+    private void reset() {
+        media.url = BASE + "hls/abr.m3u8";
+        media.downloadUrl = media.url;
+        media.sttmUrl = "http://sttm.sambatech.com.br/collector/__sttm.gif";
+        media.sttm2Url = "https://sttm2.sambatech.com/";
+        media.backupUrls = new String[]{"http://live2-sambavideos.akamaized.net/backup.m3u8"};
+        media.thumb = new Thumbnail("http://pvbps-sambavideos.akamaized.net/thumb.jpg");
+        media.outputs = new ArrayList<>(OUTPUTS.length);
+        media.captions = new ArrayList<>(LANGUAGES.length + 1);
+
+        for (String name : OUTPUTS) {
+            SambaMedia.Output output = new SambaMedia.Output();
+            output.url = BASE + "hls/" + name + ".m3u8";
+            output.label = name;
+            media.outputs.add(output);
+        }
+
+        for (String language : LANGUAGES)
+            media.captions.add(new SambaMedia.Caption(BASE + "captions/" + language + ".srt", language, language, false, false));
+
+        media.captions.add(new SambaMedia.Caption(null, "Desativar", null, false, true));
+    }
+
+    /**
+     * Previous approach: one regex replacement (compiled on each call) per URL.
+     */
+    private void rewriteWithRegex(String protocol) {
+        media.url = media.url.replaceAll("(https?)", protocol);
+        media.downloadUrl = media.downloadUrl.replaceAll("(https?)", protocol);
+        media.sttmUrl = media.sttmUrl.replaceAll("(https?)", protocol);
+        media.sttm2Url = media.sttm2Url.replaceAll("(https?)", protocol);
+        media.backupUrls[0] = media.backupUrls[0].replaceAll("(https?)", protocol);
+        media.thumb = new Thumbnail(media.thumb.url.replaceAll("(https?)", protocol));
+
+        for (SambaMedia.Output output : media.outputs)
+            output.url = output.url.replaceAll("(https?)", protocol);
+
+        for (int i = 0; i < media.captions.size(); ++i) {
+            SambaMedia.Caption caption = media.captions.get(i);
+
+            if (caption.url != null)
+                media.captions.set(i, new SambaMedia.Caption(caption.url.replaceAll("(https?)", protocol),
+                        caption.label, caption.language, caption.cc, caption.isDefault));
+        }
+    }
+}